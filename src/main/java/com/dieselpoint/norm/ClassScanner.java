@@ -0,0 +1,83 @@
+package com.dieselpoint.norm;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Finds the classes in a package, and its subpackages, on the classpath. Handles
+ * classes in directories and in jar files. Used by Database.preloadPackage().
+ */
+class ClassScanner {
+
+	static List<Class<?>> scan(String packageName, ClassLoader loader) throws IOException {
+		List<String> classNames = new ArrayList<>();
+		String path = packageName.replace('.', '/');
+
+		Enumeration<URL> urls = loader.getResources(path);
+		while (urls.hasMoreElements()) {
+			URL url = urls.nextElement();
+			if ("file".equals(url.getProtocol())) {
+				File dir = new File(URLDecoder.decode(url.getPath(), StandardCharsets.UTF_8));
+				scanDir(dir, packageName, classNames);
+			} else {
+				URLConnection con = url.openConnection();
+				if (con instanceof JarURLConnection) {
+					con.setUseCaches(false);
+					try (JarFile jar = ((JarURLConnection) con).getJarFile()) {
+						scanJar(jar, path + "/", classNames);
+					}
+				}
+			}
+		}
+
+		List<Class<?>> classes = new ArrayList<>();
+		for (String name : classNames) {
+			try {
+				classes.add(Class.forName(name, false, loader));
+			} catch (ClassNotFoundException | LinkageError e) {
+				// skip classes that can't be loaded
+			}
+		}
+		return classes;
+	}
+
+	private static void scanDir(File dir, String packageName, List<String> out) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (file.isDirectory()) {
+				scanDir(file, packageName + "." + name, out);
+			} else if (isClassFile(name)) {
+				out.add(packageName + "." + name.substring(0, name.length() - ".class".length()));
+			}
+		}
+	}
+
+	private static void scanJar(JarFile jar, String prefix, List<String> out) {
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			String name = entries.nextElement().getName();
+			if (name.startsWith(prefix) && isClassFile(name)) {
+				out.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+			}
+		}
+	}
+
+	private static boolean isClassFile(String name) {
+		return name.endsWith(".class") && !name.equals("module-info.class") && !name.equals("package-info.class");
+	}
+
+}
@@ -1,16 +1,32 @@
 package com.dieselpoint.norm;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
+import jakarta.persistence.Table;
+
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.bulk.InsertBulkLoader;
+import com.dieselpoint.norm.bulk.PostgresCopyBulkLoader;
+import com.dieselpoint.norm.cache.QueryCache;
+import com.dieselpoint.norm.cache.RowCache;
+import com.dieselpoint.norm.cache.StatementCachingDataSource;
 import com.dieselpoint.norm.latency.DbLatencyWarning;
+import com.dieselpoint.norm.latency.ExplainCapture;
 import com.dieselpoint.norm.latency.LatencyAlerter;
+import com.dieselpoint.norm.sqlmakers.PostgresMaker;
 import com.dieselpoint.norm.sqlmakers.SqlMaker;
 import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
 import com.zaxxer.hikari.HikariConfig;
@@ -22,7 +38,8 @@ import com.zaxxer.hikari.HikariDataSource;
 public class Database {
 
 	protected SqlMaker sqlMaker = new StandardSqlMaker();
-	protected DataSource ds;
+	protected volatile DataSource ds;
+	private final Object dsLock = new Object();
 
 	protected String dataSourceClassName = System.getProperty("norm.dataSourceClassName");
 	protected String driverClassName = System.getProperty("norm.driverClassName");
@@ -32,10 +49,24 @@ public class Database {
 	protected String user = System.getProperty("norm.user");
 	protected String password = System.getProperty("norm.password");
 	protected int maxPoolSize = 10;
+	protected int minimumIdle = -1;
+	protected List<String> warmUpSql = new CopyOnWriteArrayList<>();
+	protected int statementCacheSize = 0;
 	protected long maxLatency = System.getProperty("norm.maxLatency") != null ? Integer.parseInt( System.getProperty("norm.maxLatency") ) : -1;
 	protected ArrayList<LatencyAlerter> latencyAlerters = new ArrayList<>();
+	protected volatile ExplainCapture explainCapture;
 
 	protected Map<String, String> dataSourceProperties = new HashMap<>();
+	protected BulkLoader bulkLoader;
+	protected DirtyTracker dirtyTracker;
+	protected volatile RowCache rowCache;
+	private final Object rowCacheLock = new Object();
+	private volatile long rowCacheGeneration;
+	protected QueryCache queryCache = new QueryCache(100_000);
+	protected ReplicaSet replicas = new ReplicaSet();
+	protected long readYourWritesMillis = 0;
+	private final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+	private final ThreadLocal<Session> currentSession = new ThreadLocal<>();
 
 	/**
 	 * Set the maker object for the particular flavor of sql.
@@ -48,6 +79,147 @@ public class Database {
 		return sqlMaker;
 	}
 
+	/**
+	 * Turn on dirty tracking. Pojos returned by results() and first() are then
+	 * snapshotted, and update() writes only the columns that have changed since
+	 * the pojo was loaded or last written, skipping the statement entirely if
+	 * nothing changed. Snapshots are held by weak reference. Rows read with
+	 * iterate() or stream() are not tracked.
+	 * <p>
+	 * A snapshot is refreshed when an update succeeds, even if the enclosing
+	 * transaction is later rolled back, so reload rows after a rollback.
+	 * </p>
+	 */
+	public void setDirtyTracking(boolean dirtyTracking) {
+		this.dirtyTracker = dirtyTracking ? new DirtyTracker() : null;
+	}
+
+	public boolean isDirtyTracking() {
+		return dirtyTracker != null;
+	}
+
+	/**
+	 * Set the cache used by findById(), or null for none, the default. Rows are
+	 * invalidated when this Database updates, upserts, or deletes them, but not
+	 * when they are changed by raw sql, by .where().delete(), or by another
+	 * process; use a RowCache with a time-to-live if that matters.
+	 */
+	public void setRowCache(RowCache rowCache) {
+		this.rowCache = rowCache;
+	}
+
+	public RowCache getRowCache() {
+		return rowCache;
+	}
+
+	// package-private
+	long getRowCacheGeneration() {
+		return rowCacheGeneration;
+	}
+
+	/**
+	 * Cache the row, unless a row has been invalidated since the generation was
+	 * read, in which case the values may be stale.
+	 */
+	// package-private
+	void putCachedRow(RowCache cache, Class<?> rowClass, List<Object> key, Object[] values, long generation) {
+		synchronized (rowCacheLock) {
+			if (rowCacheGeneration == generation) {
+				cache.put(rowClass, key, values);
+			}
+		}
+	}
+
+	// package-private
+	void invalidateCachedRow(RowCache cache, Class<?> rowClass, List<Object> key) {
+		synchronized (rowCacheLock) {
+			rowCacheGeneration++;
+			cache.invalidate(rowClass, key);
+		}
+	}
+
+	/**
+	 * Set the maximum number of rows, across all queries, that Query.cached() may
+	 * hold. The default is 100,000.
+	 */
+	public void setQueryCacheMaxRows(int maxRows) {
+		queryCache.setMaxRows(maxRows);
+	}
+
+	/**
+	 * Returns the cache used by Query.cached(), for its hit and miss counts, or to
+	 * clear it after changing the database some other way.
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	// package-private
+	DirtyTracker getDirtyTracker() {
+		return dirtyTracker;
+	}
+
+	/**
+	 * Start a WriteBehindWriter, which queues rows and inserts them on a
+	 * background thread in batches. Rows are written when flushSize rows have
+	 * accumulated or flushIntervalMillis has passed. When queueCapacity rows are
+	 * waiting, callers block until there is room. Close the writer when done.
+	 */
+	public WriteBehindWriter writeBehind(int queueCapacity, int flushSize, long flushIntervalMillis) {
+		return new WriteBehindWriter(this, queueCapacity, flushSize, flushIntervalMillis);
+	}
+
+	/**
+	 * Build the SqlMaker's metadata for these classes now, so the cost of
+	 * introspecting them is paid at startup rather than on the first query.
+	 */
+	public void preload(Class<?>... classes) {
+		for (Class<?> clazz : classes) {
+			sqlMaker.getPojoInfo(clazz);
+			sqlMaker.getSelectSql(new Query(this), clazz);
+		}
+	}
+
+	/**
+	 * Preload every class in the package, and its subpackages, that has a @Table
+	 * annotation. See {@link #preload(Class...)}.
+	 * 
+	 * @return the classes that were preloaded
+	 */
+	public List<Class<?>> preloadPackage(String packageName) {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = Database.class.getClassLoader();
+		}
+		List<Class<?>> tables = new ArrayList<>();
+		try {
+			for (Class<?> clazz : ClassScanner.scan(packageName, loader)) {
+				if (clazz.isAnnotationPresent(Table.class)) {
+					tables.add(clazz);
+				}
+			}
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+		preload(tables.toArray(new Class<?>[tables.size()]));
+		return tables;
+	}
+
+	/**
+	 * Set the BulkLoader used by bulkLoad(). The default uses COPY when the
+	 * SqlMaker is a PostgresMaker, and multi-row inserts otherwise.
+	 */
+	public void setBulkLoader(BulkLoader bulkLoader) {
+		this.bulkLoader = bulkLoader;
+	}
+
+	public BulkLoader getBulkLoader() {
+		if (bulkLoader == null) {
+			return sqlMaker instanceof PostgresMaker ? new PostgresCopyBulkLoader() : new InsertBulkLoader();
+		}
+		return bulkLoader;
+	}
+
 	/**
 	 * Provides the DataSource used by this database. Override this method to change
 	 * how the DataSource is created or configured.
@@ -55,6 +227,9 @@ public class Database {
 	protected DataSource getDataSource() throws SQLException {
 		HikariConfig config = new HikariConfig();
 		config.setMaximumPoolSize(maxPoolSize);
+		if (minimumIdle >= 0) {
+			config.setMinimumIdle(minimumIdle);
+		}
 
 		if (dataSourceClassName != null) {
 			config.setDataSourceClassName(dataSourceClassName);
@@ -133,19 +308,175 @@ public class Database {
 	/**
 	 * Returns a JDBC connection. Can be useful if you need to customize how
 	 * transactions work, but you shouldn't normally need to call this method. You
-	 * must close the connection after you're done with it.
+	 * must close the connection after you're done with it. If a Session is open
+	 * on this thread, this is the session's connection.
 	 */
 	public Connection getConnection() {
+		Session session = currentSession.get();
+		if (session != null) {
+			return session.getConnection();
+		}
+		return openConnection();
+	}
+
+	/**
+	 * Returns a new connection from the pool, ignoring any Session.
+	 */
+	// package-private
+	Connection openConnection() {
+		DataSource current = start();
 		try {
+			return current.getConnection();
+		} catch (Throwable t) {
+			throw new DbException(t);
+		}
+	}
 
+	/**
+	 * Create the connection pool, if it hasn't been created yet. Otherwise the
+	 * pool is created when the first connection is needed. Safe to call from
+	 * several threads at once; only one pool is ever created. See also
+	 * {@link #warmUp()}.
+	 * 
+	 * @return the DataSource
+	 */
+	public DataSource start() {
+		DataSource current = ds;
+		if (current != null) {
+			return current;
+		}
+		synchronized (dsLock) {
 			if (ds == null) {
-				ds = getDataSource();
+				try {
+					DataSource newDs = getDataSource();
+					if (statementCacheSize > 0) {
+						newDs = new StatementCachingDataSource(newDs, statementCacheSize);
+					}
+					ds = newDs;
+				} catch (SQLException | RuntimeException e) {
+					throw new DbException(e);
+				}
 			}
-			return ds.getConnection();
+			return ds;
+		}
+	}
 
-		} catch (Throwable t) {
-			throw new DbException(t);
+	/**
+	 * Create the connection pool, open minimumIdle connections, and prepare the
+	 * statements added with addWarmUpSql() on each of them, so that the first
+	 * requests after startup don't pay for connecting. Preparing only helps if
+	 * the driver or the {@link #setStatementCacheSize(int) statement cache} keeps
+	 * statements per connection. Call it once at startup, after configuring the
+	 * Database.
+	 */
+	public void warmUp() {
+		start();
+		int count = minimumIdle >= 0 ? Math.min(minimumIdle, maxPoolSize) : maxPoolSize;
+		List<Connection> cons = new ArrayList<>();
+		String sql = null;
+		try {
+			// hold them all so that each is a separate physical connection
+			for (int i = 0; i < count; i++) {
+				Connection con = openConnection();
+				cons.add(con);
+				for (String warm : warmUpSql) {
+					sql = warm;
+					con.prepareStatement(warm).close();
+				}
+			}
+		} catch (SQLException e) {
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			for (Connection con : cons) {
+				try {
+					con.close();
+				} catch (SQLException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add sql for warmUp() to prepare on each connection. Queries built by Norm
+	 * can be found with Query.getSql() after running them, or with
+	 * SqlMaker.getSelectSql().
+	 */
+	public void addWarmUpSql(String sql) {
+		warmUpSql.add(sql);
+	}
+
+	/**
+	 * Returns a JDBC connection for a read-only query. This is a connection to a
+	 * replica if any were added, the current thread hasn't written within the
+	 * read-your-writes window, and no Session is open on this thread. Otherwise
+	 * it's the same as getConnection(). If the
+	 * replica can't supply a connection, the primary is used. You must close the
+	 * connection after you're done with it.
+	 */
+	public Connection getReadConnection() {
+		if (replicas.isEmpty() || isInReadYourWritesWindow() || currentSession.get() != null) {
+			return getConnection();
+		}
+		try {
+			return replicas.getConnection();
+		} catch (SQLException | RuntimeException e) {
+			return getConnection();
+		}
+	}
+
+	private boolean isInReadYourWritesWindow() {
+		if (readYourWritesMillis <= 0) {
+			return false;
 		}
+		Long last = lastWrite.get();
+		return last != null && System.nanoTime() - last < readYourWritesMillis * 1_000_000L;
+	}
+
+	// package-private
+	void noteWrite() {
+		if (readYourWritesMillis > 0 && !replicas.isEmpty()) {
+			lastWrite.set(System.nanoTime());
+		}
+	}
+
+	/**
+	 * Add a read replica. Non-transactional results(), first(), count(),
+	 * iterate(), and stream() calls are then sent to a replica, while writes and
+	 * everything in a Transaction go to the primary. Use Query.primary() for a
+	 * read that must see the latest data, or a read written as raw sql that
+	 * modifies the database. The replica's lifecycle is up to the caller;
+	 * close() doesn't close it.
+	 */
+	public void addReplica(DataSource replica) {
+		replicas.add(replica);
+	}
+
+	/**
+	 * Set how a replica is picked for each read. The default is ROUND_ROBIN.
+	 */
+	public void setReplicaSelection(ReplicaSelection selection) {
+		replicas.setSelection(selection);
+	}
+
+	public ReplicaSelection getReplicaSelection() {
+		return replicas.getSelection();
+	}
+
+	/**
+	 * After a thread writes to the primary, send that thread's reads to the
+	 * primary as well for this many milliseconds, so it sees its own writes
+	 * despite replication lag. A transaction counts as a write when it commits.
+	 * The default, 0, turns this off.
+	 */
+	public void setReadYourWritesMillis(long millis) {
+		this.readYourWritesMillis = millis;
+	}
+
+	public long getReadYourWritesMillis() {
+		return readYourWritesMillis;
 	}
 
 	/**
@@ -165,6 +496,23 @@ public class Database {
 		return new Query(this).insert(row);
 	}
 
+	/**
+	 * Insert a collection of rows using JDBC batching. See
+	 * {@link com.dieselpoint.norm.Query#insertAll(Collection) Query.insertAll}.
+	 */
+	public Query insertAll(Collection<?> rows) {
+		return new Query(this).insertAll(rows);
+	}
+
+	/**
+	 * Load a large number of rows using the fastest path the database offers.
+	 * See {@link com.dieselpoint.norm.Query#bulkLoad(Class, Iterator)
+	 * Query.bulkLoad}.
+	 */
+	public <T> Query bulkLoad(Class<T> rowClass, Iterator<? extends T> rows) {
+		return new Query(this).bulkLoad(rowClass, rows);
+	}
+
 	/**
 	 * See {@link com.dieselpoint.norm.Query#generatedKeyReceiver(Object, String...)
 	 * generateKeyReceiver} method.
@@ -192,6 +540,24 @@ public class Database {
 		return new Query(this).results(clazz);
 	}
 
+	/**
+	 * Execute a "select" query and iterate over the results one row at a time
+	 * without loading them all into memory. The iterator must be closed. See
+	 * {@link com.dieselpoint.norm.Query#iterate(Class) Query.iterate}.
+	 */
+	public <T> ResultIterator<T> iterate(Class<T> clazz) {
+		return new Query(this).iterate(clazz);
+	}
+
+	/**
+	 * Execute a "select" query and return the results as a lazily-populated
+	 * Stream. The Stream must be closed. See
+	 * {@link com.dieselpoint.norm.Query#stream(Class) Query.stream}.
+	 */
+	public <T> Stream<T> stream(Class<T> clazz) {
+		return new Query(this).stream(clazz);
+	}
+
 	/**
 	 * Returns the first row in a query in a pojo. Will return it in a Map if a
 	 * class that implements Map is specified.
@@ -200,6 +566,31 @@ public class Database {
 		return new Query(this).first(clazz);
 	}
 
+	/**
+	 * Returns the row with the given primary key, or null. See
+	 * {@link Query#findById(Class, Object...)}.
+	 */
+	public <T> T findById(Class<T> clazz, Object... keys) {
+		return new Query(this).findById(clazz, keys);
+	}
+
+	/**
+	 * Returns the rows with the given primary keys, keyed by id. See
+	 * {@link Query#findAllByIds(Class, Collection)}.
+	 */
+	public <T> Map<Object, T> findAllByIds(Class<T> clazz, Collection<?> ids) {
+		return new Query(this).findAllByIds(clazz, ids);
+	}
+
+	/**
+	 * Returns the rows with the given primary keys, keyed by id, fetching chunks
+	 * of keys in parallel on the executor. See
+	 * {@link Query#findAllByIds(Class, Collection, Executor)}.
+	 */
+	public <T> Map<Object, T> findAllByIds(Class<T> clazz, Collection<?> ids, Executor executor) {
+		return new Query(this).findAllByIds(clazz, ids, executor);
+	}
+
 	/**
 	 * Update a row in a table. It will match an existing row based on the primary
 	 * key.
@@ -208,6 +599,22 @@ public class Database {
 		return new Query(this).update(row);
 	}
 
+	/**
+	 * Update a collection of rows using JDBC batching. See
+	 * {@link com.dieselpoint.norm.Query#updateAll(Collection) Query.updateAll}.
+	 */
+	public Query updateAll(Collection<?> rows) {
+		return new Query(this).updateAll(rows);
+	}
+
+	/**
+	 * Delete a collection of rows by primary key using JDBC batching. See
+	 * {@link com.dieselpoint.norm.Query#deleteAll(Collection) Query.deleteAll}.
+	 */
+	public Query deleteAll(Collection<?> rows) {
+		return new Query(this).deleteAll(rows);
+	}
+
 	/**
 	 * Upsert a row in a table. It will insert, and if that fails, do an update with
 	 * a match on a primary key.
@@ -216,6 +623,14 @@ public class Database {
 		return new Query(this).upsert(row);
 	}
 
+	/**
+	 * Upsert a collection of rows using multi-row statements. See
+	 * {@link com.dieselpoint.norm.Query#upsertAll(Collection) Query.upsertAll}.
+	 */
+	public Query upsertAll(Collection<?> rows) {
+		return new Query(this).upsertAll(rows);
+	}
+
 	/**
 	 * Create a query and specify which table it operates on.
 	 */
@@ -232,7 +647,28 @@ public class Database {
 	 * @return a transaction object
 	 */
 	public Transaction startTransaction() {
-		return new Transaction( this, getConnection() );
+		return new Transaction( this, openConnection() );
+	}
+
+	/**
+	 * Open a Session, which keeps one connection for the queries this thread
+	 * runs until the session is closed. See {@link Session}.
+	 */
+	public Session session() {
+		Session outer = currentSession.get();
+		if (outer != null) {
+			return new Session( this, outer );
+		}
+		Session session = new Session( this, null );
+		currentSession.set( session );
+		return session;
+	}
+
+	// package-private
+	void endSession( Session session ) {
+		if (currentSession.get() == session) {
+			currentSession.remove();
+		}
 	}
 
 	/**
@@ -243,7 +679,16 @@ public class Database {
 	}
 
 	public void close() {
-		if (ds instanceof HikariDataSource) {
+		if (explainCapture != null) {
+			explainCapture.close();
+		}
+		if (ds instanceof StatementCachingDataSource) {
+			try {
+				((StatementCachingDataSource) ds).close();
+			} catch (Exception e) {
+				throw new DbException(e);
+			}
+		} else if (ds instanceof HikariDataSource) {
 			((HikariDataSource) ds).close();
 		}
 	}
@@ -284,6 +729,43 @@ public class Database {
 		this.maxPoolSize = maxPoolSize;
 	}
 
+	public int getMinimumIdle() {
+		return minimumIdle;
+	}
+
+	/**
+	 * Set the number of idle connections the pool tries to keep open, which is
+	 * also the number warmUp() opens. The default, -1, leaves it to the pool;
+	 * Hikari then keeps maxPoolSize connections open. Must be called before the
+	 * pool is created.
+	 */
+	public void setMinimumIdle(int minimumIdle) {
+		this.minimumIdle = minimumIdle;
+	}
+
+	/**
+	 * Keep up to this many PreparedStatements open per pooled connection, so
+	 * repeated sql isn't parsed again on every execution. Useful for drivers
+	 * without their own statement cache, like SQLite and Derby. The default, 0,
+	 * turns the cache off. Must be called before the first connection is made.
+	 * See {@link StatementCachingDataSource}.
+	 */
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * Returns the statement cache, which reports hit and miss counts, or null if
+	 * the cache is off or no connection has been made yet.
+	 */
+	public StatementCachingDataSource getStatementCache() {
+		return ds instanceof StatementCachingDataSource ? (StatementCachingDataSource) ds : null;
+	}
+
 	public long getMaxLatencyMillis() { return maxLatency; }
 
 	/**
@@ -307,7 +789,37 @@ public class Database {
 		this.latencyAlerters.add( alerter );
 	}
 
+	/**
+	 * Turn on EXPLAIN capture for slow queries. When a query exceeds its maximum latency, its sql is explained on a
+	 * separate thread and connection, and the plan is attached to the {@link DbLatencyWarning} before the
+	 * LatencyAlerters are called. Those alerters are then called on the explain thread, and an exception thrown by one
+	 * is logged rather than passed to the caller. Plans are captured at most once per
+	 * {@link ExplainCapture#setMinIntervalMillis(long) interval}; other warnings are alerted as usual, without a plan.
+	 */
+	public void setExplainCapture( boolean on ) {
+		if (on && explainCapture == null) {
+			explainCapture = new ExplainCapture( this );
+		} else if (!on && explainCapture != null) {
+			explainCapture.close();
+			explainCapture = null;
+		}
+	}
+
+	/**
+	 * @return the explain capture, to adjust its interval, or null if it is off
+	 */
+	public ExplainCapture getExplainCapture() { return explainCapture; }
+
 	public void alertLatency( DbLatencyWarning latencyWarning ) {
+		ExplainCapture capture = explainCapture;
+		if (capture != null && latencyWarning.maxAcceptableLatency > 0 && !latencyAlerters.isEmpty()
+				&& capture.capture( latencyWarning, this::notifyLatencyAlerters )) {
+			return;
+		}
+		notifyLatencyAlerters( latencyWarning );
+	}
+
+	private void notifyLatencyAlerters( DbLatencyWarning latencyWarning ) {
 		for (LatencyAlerter a : latencyAlerters) {
 			a.alertLatencyFailure( latencyWarning );
 		}
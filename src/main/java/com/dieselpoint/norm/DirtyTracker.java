@@ -0,0 +1,147 @@
+package com.dieselpoint.norm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the column values of pojos as they were loaded from the database,
+ * so that Query.update() can write only the columns that changed. Rows are
+ * held by weak reference and compared by identity, so a snapshot goes away
+ * when its pojo is garbage collected. Turn it on with
+ * Database.setDirtyTracking(true).
+ * <p>
+ * A snapshot is the array returned by SqlMaker.getUpdateArgs(): the update
+ * columns followed by the primary key values.
+ * </p>
+ */
+class DirtyTracker {
+
+	private final ConcurrentHashMap<RowKey, Object[]> snapshots = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	/**
+	 * Record the current values of a row.
+	 */
+	void snapshot(Object row, Object[] values) {
+		purge();
+		Object[] copy = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			copy[i] = copyValue(values[i]);
+		}
+		snapshots.put(new RowKey(row, queue), copy);
+	}
+
+	/**
+	 * Returns the snapshot of a row, or null if it isn't being tracked.
+	 */
+	Object[] get(Object row) {
+		return snapshots.get(new RowKey(row, null));
+	}
+
+	void remove(Object row) {
+		snapshots.remove(new RowKey(row, null));
+	}
+
+	int size() {
+		purge();
+		return snapshots.size();
+	}
+
+	/**
+	 * Compare current values to a snapshot. Returns the indexes of the values
+	 * that differ.
+	 */
+	static BitSet diff(Object[] snapshot, Object[] values) {
+		BitSet changed = new BitSet(values.length);
+		for (int i = 0; i < values.length; i++) {
+			if (!same(snapshot[i], values[i])) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	private void purge() {
+		Object ref;
+		while ((ref = queue.poll()) != null) {
+			snapshots.remove(ref);
+		}
+	}
+
+	private static Object copyValue(Object value) {
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		if (value instanceof Object[]) {
+			return ((Object[]) value).clone();
+		}
+		if (value instanceof Date) {
+			return ((Date) value).clone();
+		}
+		return value;
+	}
+
+	private static boolean same(Object before, Object after) {
+		if (before == null || after == null) {
+			return before == after;
+		}
+		if (before instanceof byte[] && after instanceof byte[]) {
+			return Arrays.equals((byte[]) before, (byte[]) after);
+		}
+		if (before instanceof Object[] && after instanceof Object[]) {
+			return Arrays.deepEquals((Object[]) before, (Object[]) after);
+		}
+		if (isValueType(after)) {
+			return before.equals(after);
+		}
+		// some other mutable object, which we can't have copied; assume it changed
+		return false;
+	}
+
+	private static boolean isValueType(Object value) {
+		return value instanceof String || value instanceof Number && (value instanceof Integer
+				|| value instanceof Long || value instanceof Double || value instanceof Float || value instanceof Short
+				|| value instanceof Byte || value instanceof BigDecimal || value instanceof BigInteger)
+				|| value instanceof Boolean || value instanceof Character || value instanceof Enum
+				|| value instanceof Date || value instanceof TemporalAccessor || value instanceof UUID;
+	}
+
+	/**
+	 * A weak reference that compares by the identity of the referent.
+	 */
+	private static class RowKey extends WeakReference<Object> {
+
+		private final int hashCode;
+
+		RowKey(Object row, ReferenceQueue<Object> queue) {
+			super(row, queue);
+			hashCode = System.identityHashCode(row);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RowKey)) {
+				return false;
+			}
+			Object row = get();
+			return row != null && row == ((RowKey) obj).get();
+		}
+	}
+
+}
@@ -1,19 +1,41 @@
 package com.dieselpoint.norm;
 
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.dieselpoint.norm.cache.QueryCache;
+import com.dieselpoint.norm.cache.RowCache;
 import com.dieselpoint.norm.latency.LatencyTimer;
 import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.RowMapper;
 import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
 
 /**
  * Holds all of the information in a query. Create a query using
@@ -34,15 +56,25 @@ public class Query {
 	private Object[] args;
 
 	private int rowsAffected;
+	private int[] batchRowsAffected;
+	private int batchSize = 1000;
+	private boolean fetchGeneratedKeys = true;
+	private boolean multiRowInsert;
+	private boolean multiRowDelete;
 
 	private ResultSetMetaData meta;
 
 	private Database db;
 	private SqlMaker sqlMaker;
 	private long maxLatency;
+	private int fetchSize;
 
 	private Transaction transaction;
 
+	private long cacheTtlMillis;
+	private Class<?> tableClass;
+	private boolean primary;
+
 	public Query(Database db) {
 		this.db = db;
 		this.sqlMaker = db.getSqlMaker();
@@ -52,11 +84,25 @@ public class Query {
 	/**
 	 * Add a where clause and some parameters to a query. Has no effect if the
 	 * .sql() method is used.
+	 * <p>
+	 * A Collection arg for an "in (?)" placeholder is expanded to bind all of
+	 * its values: .where("id in (?)", ids). See SqlMaker.expandInLists().
+	 * </p>
 	 * 
 	 * @param where Example: "name=?"
 	 * @param args  The parameter values to use in the where, example: "Bob"
 	 */
 	public Query where(String where, Object... args) {
+		if (args != null) {
+			for (Object arg : args) {
+				if (arg instanceof Collection) {
+					List<Object> list = new ArrayList<>(Arrays.asList(args));
+					where = sqlMaker.expandInLists(where, list);
+					args = list.toArray();
+					break;
+				}
+			}
+		}
 		this.where = where;
 		this.args = args;
 		return this;
@@ -109,6 +155,239 @@ public class Query {
 		}
 	}
 
+	/**
+	 * Returns the row with the given primary key, or null if there is none. Give
+	 * the key values in the order of the @Id properties.
+	 * <p>
+	 * If the Database has a RowCache, the row is looked up there first, and
+	 * cached if it is read from the database. The cache is skipped if the query
+	 * has a .table() or is part of a transaction.
+	 * </p>
+	 */
+	public <T> T findById(Class<T> clazz, Object... keys) {
+		PojoInfo info = sqlMaker.getPojoInfo(clazz);
+		if (!(info instanceof StandardPojoInfo)) {
+			throw new DbException("findById() needs a SqlMaker that extends StandardSqlMaker");
+		}
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) info;
+		List<String> keyNames = pojoInfo.primaryKeyNames;
+		if (keyNames.isEmpty()) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		if (keys == null || keys.length != keyNames.size()) {
+			throw new DbException(clazz.getName() + " has " + keyNames.size() + " primary key column(s), but "
+					+ (keys == null ? 0 : keys.length) + " key value(s) were given");
+		}
+
+		if (table == null && transaction != null && transaction.isIdentityMap()) {
+			Object existing = transaction.getIdentity(clazz, rowCacheKey(keys));
+			if (existing != null) {
+				return clazz.cast(existing);
+			}
+		}
+
+		RowCache cache = table == null && transaction == null ? db.getRowCache() : null;
+		List<Object> key = null;
+		long generation = 0;
+		if (cache != null) {
+			// read before the row, so an invalidation during the read is noticed
+			generation = db.getRowCacheGeneration();
+			key = rowCacheKey(keys);
+			Object[] values = cache.get(clazz, key);
+			if (values != null) {
+				return fromCachedValues(clazz, pojoInfo, values);
+			}
+		}
+
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < keyNames.size(); i++) {
+			if (i > 0) {
+				buf.append(" and ");
+			}
+			buf.append(keyNames.get(i)).append("=?");
+		}
+		where(buf.toString(), keys);
+		T row = first(clazz);
+
+		if (row != null && cache != null) {
+			Object[] values = new Object[pojoInfo.propertyMap.size()];
+			int i = 0;
+			for (Property prop : pojoInfo.propertyMap.values()) {
+				values[i++] = copyMutable(pojoInfo.getValue(row, prop));
+			}
+			db.putCachedRow(cache, clazz, key, values, generation);
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the rows with the given primary keys, in a map from each key that
+	 * was found to its row, in the order the keys were given. For a composite
+	 * key, give each key as a List or array of values in the order of the @Id
+	 * properties.
+	 * <p>
+	 * The keys are fetched in chunks of "where id in (?,?,...)", or "where
+	 * (k1,k2) in ((?,?),...)" for composite keys, of at most batchSize keys.
+	 * </p>
+	 */
+	public <T> Map<Object, T> findAllByIds(Class<T> clazz, Collection<?> ids) {
+		return findAllByIds(clazz, ids, null);
+	}
+
+	/**
+	 * Same as {@link #findAllByIds(Class, Collection)}, but if executor is not
+	 * null, the chunks are run on it in parallel, each with its own connection
+	 * from the pool. The executor is not used in a transaction.
+	 */
+	public <T> Map<Object, T> findAllByIds(Class<T> clazz, Collection<?> ids, Executor executor) {
+		StandardPojoInfo pojoInfo = getKeyedPojoInfo(clazz);
+		if (pojoInfo == null) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		List<String> keyNames = pojoInfo.primaryKeyNames;
+		int keyCount = keyNames.size();
+
+		// normalized key -> key as given
+		Map<List<Object>, Object> given = new LinkedHashMap<>();
+		for (Object id : ids) {
+			Object[] values;
+			if (keyCount == 1) {
+				values = new Object[] { id };
+			} else if (id instanceof List) {
+				values = ((List<?>) id).toArray();
+			} else if (id instanceof Object[]) {
+				values = (Object[]) id;
+			} else {
+				throw new DbException(clazz.getName() + " has a composite key. Give each key as a List or array.");
+			}
+			if (values.length != keyCount) {
+				throw new DbException(clazz.getName() + " has " + keyCount + " primary key column(s), but "
+						+ values.length + " key value(s) were given");
+			}
+			given.put(rowCacheKey(values), id);
+		}
+
+		// a power of two, so the chunks share the sql that where() generates for in lists
+		int limit = Math.max(1, Math.min(batchSize, sqlMaker.getMaxParameters() / keyCount));
+		int chunkSize = Integer.highestOneBit(limit);
+
+		List<List<List<Object>>> chunks = new ArrayList<>();
+		List<List<Object>> chunk = null;
+		for (List<Object> key : given.keySet()) {
+			if (chunk == null || chunk.size() == chunkSize) {
+				chunk = new ArrayList<>(Math.min(chunkSize, given.size()));
+				chunks.add(chunk);
+			}
+			chunk.add(key);
+		}
+
+		List<List<T>> results = new ArrayList<>();
+		if (executor == null || transaction != null || chunks.size() < 2) {
+			for (List<List<Object>> keys : chunks) {
+				results.add(findChunk(clazz, keyNames, keys));
+			}
+		} else {
+			List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+			for (List<List<Object>> keys : chunks) {
+				futures.add(CompletableFuture.supplyAsync(() -> findChunk(clazz, keyNames, keys), executor));
+			}
+			for (CompletableFuture<List<T>> future : futures) {
+				try {
+					results.add(future.join());
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new DbException(e.getCause());
+				}
+			}
+		}
+
+		Map<List<Object>, T> found = new HashMap<>();
+		for (List<T> rows : results) {
+			for (T row : rows) {
+				found.put(rowCacheKey(sqlMaker.getDeleteArgs(this, row)), row);
+			}
+		}
+		Map<Object, T> out = new LinkedHashMap<>();
+		for (Map.Entry<List<Object>, Object> entry : given.entrySet()) {
+			T row = found.get(entry.getKey());
+			if (row != null) {
+				out.put(entry.getValue(), row);
+			}
+		}
+		return out;
+	}
+
+	private <T> List<T> findChunk(Class<T> clazz, List<String> keyNames, List<List<Object>> keys) {
+		Query query = new Query(db).table(table).transaction(transaction).maxLatency(maxLatency);
+		if (primary) {
+			query.primary();
+		}
+
+		if (keyNames.size() == 1) {
+			List<Object> values = new ArrayList<>(keys.size());
+			for (List<Object> key : keys) {
+				values.add(key.get(0));
+			}
+			return query.where(keyNames.get(0) + " in (?)", values).results(clazz);
+		}
+
+		// row-value in list, padded to the chunk's power of two like where() does
+		int count = 1;
+		while (count < keys.size()) {
+			count <<= 1;
+		}
+		String tuple = "(" + Util.getQuestionMarks(keyNames.size()) + ")";
+		StringBuilder where = new StringBuilder();
+		where.append('(').append(Util.join(keyNames)).append(") in (");
+		List<Object> args = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				where.append(',');
+			}
+			where.append(tuple);
+			args.addAll(keys.get(Math.min(i, keys.size() - 1)));
+		}
+		where.append(')');
+		return query.where(where.toString(), args.toArray()).results(clazz);
+	}
+
+	/**
+	 * Copy values that a caller could change in place, so that rows in the
+	 * RowCache aren't shared with pojos.
+	 */
+	private static Object copyMutable(Object value) {
+		if (value instanceof java.util.Date) {
+			return ((java.util.Date) value).clone();
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		return value;
+	}
+
+	private <T> T fromCachedValues(Class<T> clazz, StandardPojoInfo pojoInfo, Object[] values) {
+		T row;
+		try {
+			row = clazz.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new DbException(e);
+		}
+		int i = 0;
+		for (Property prop : pojoInfo.propertyMap.values()) {
+			Object value = values[i++];
+			if (prop.setter != null || prop.writeMethod != null || prop.field != null) {
+				pojoInfo.putValue(row, prop, copyMutable(value));
+			}
+		}
+		DirtyTracker tracker = db.getDirtyTracker();
+		if (tracker != null) {
+			tracker.snapshot(row, sqlMaker.getUpdateArgs(this, row));
+		}
+		return row;
+	}
+
 	public Long count() {
 		sql = sqlMaker.getSelectCountSql(this, null);
 		return first( Long.class );
@@ -116,18 +395,69 @@ public class Query {
 
 	public Long count(Class<?> clazz) {
 		sql = sqlMaker.getSelectCountSql(this, clazz);
+		tableClass = clazz;
 		return first( Long.class );
 	}
 
 	/**
-	 * Provides the results as a list of Map objects instead of a list of pojos.
+	 * Cache the results of this query for up to ttl, or until this Database
+	 * writes to the query's table. The table is the one given with .table(), or
+	 * else the row class's table. Queries with the same sql, args, and row class
+	 * share an entry, and if several threads miss at once, only one queries the
+	 * database.
+	 * <p>
+	 * Cached results are shared, so don't modify the list or its rows. Writes
+	 * made with raw sql and no .table() clear the whole cache. Changes made by
+	 * other processes aren't seen until the entry expires. The cache is skipped
+	 * if the query is part of a transaction. See
+	 * {@link Database#setQueryCacheMaxRows(int)}.
+	 * </p>
 	 */
-	private List<Map<String, Object>> resultsMap(Class<Map<String, Object>> clazz) {
+	public Query cached(Duration ttl) {
+		this.cacheTtlMillis = ttl.toMillis();
+		return this;
+	}
 
-		List<Map<String, Object>> out = new ArrayList<>();
+	/**
+	 * Execute a "select" query and return a list of results where each row is an
+	 * instance of clazz. Returns an empty list if there are no results.
+	 */
+	public <T> List<T> results(Class<T> clazz) {
+		if (cacheTtlMillis <= 0 || transaction != null) {
+			return loadResults(clazz);
+		}
+		if (sql == null) {
+			sql = sqlMaker.getSelectSql(this, clazz);
+		}
+		return db.getQueryCache().get(getCacheTable(clazz), sql, clazz, args, cacheTtlMillis,
+				() -> loadResults(clazz));
+	}
+
+	private String getCacheTable(Class<?> clazz) {
+		if (table != null) {
+			return table;
+		}
+		Class<?> pojoClass = tableClass != null ? tableClass : clazz;
+		if (Map.class.isAssignableFrom(pojoClass) || Util.isPrimitiveOrString(pojoClass)) {
+			throw new DbException("Specify the table for cached() queries with .table()");
+		}
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(pojoClass);
+		if (!(pojoInfo instanceof StandardPojoInfo)) {
+			throw new DbException("Specify the table for cached() queries with .table()");
+		}
+		return ((StandardPojoInfo) pojoInfo).table;
+	}
+
+	private <T> List<T> loadResults(Class<T> clazz) {
+
+		List<T> out = new ArrayList<>();
 		Connection con = null;
 		PreparedStatement state = null;
 
+		// rows from hand-written sql may not have all of their columns, so they
+		// don't go in the transaction's identity map
+		boolean identities = sql == null && transaction != null && transaction.isIdentityMap();
+
 		try {
 			if (sql == null) {
 				sql = sqlMaker.getSelectSql(this, clazz);
@@ -135,35 +465,46 @@ public class Query {
 
 			Connection localCon;
 			if (transaction == null) {
-				localCon = db.getConnection();
+				localCon = primary ? db.getConnection() : db.getReadConnection();
 				con = localCon; // con gets closed below if non-null
 			} else {
-				localCon = transaction.getConnection();
+				localCon = transaction.getReadConnection();
 			}
 
 			state = localCon.prepareStatement(sql);
 			loadArgs(state);
 
-			LatencyTimer myTimer = new LatencyTimer( this );
+			LatencyTimer myLatencyTimer = new LatencyTimer( this );
 			ResultSet rs = state.executeQuery();
-			myTimer.stop( sql, args );
+			myLatencyTimer.stop( sql, args );
 
 			meta = rs.getMetaData();
-			int colCount = meta.getColumnCount();
+			RowMapper<T> mapper = sqlMaker.getRowMapper(clazz, meta);
+			DirtyTracker tracker = mapper.isPojo() ? db.getDirtyTracker() : null;
+			StandardPojoInfo identityInfo = identities && mapper.isPojo() ? getKeyedPojoInfo(clazz) : null;
 
 			while (rs.next()) {
-				Map<String, Object> map = clazz.getDeclaredConstructor().newInstance();
-
-				for (int i = 1; i <= colCount; i++) {
-					String colName = meta.getColumnLabel(i);
-					map.put(colName, rs.getObject(i));
+				T row = mapper.map(rs);
+				if (identityInfo != null) {
+					// return the instance the transaction already has, if any
+					List<Object> key = rowCacheKey(sqlMaker.getDeleteArgs(this, row));
+					Object existing = transaction.getIdentity(clazz, key);
+					if (existing != null) {
+						out.add(clazz.cast(existing));
+						continue;
+					}
+					transaction.putIdentity(clazz, key, row);
+				}
+				if (tracker != null) {
+					tracker.snapshot(row, sqlMaker.getUpdateArgs(this, row));
 				}
-				out.add(map);
+				out.add(row);
 			}
 
-		} catch (InstantiationException | IllegalAccessException | SQLException | IllegalArgumentException
-				| InvocationTargetException | NoSuchMethodException | SecurityException e) {
-			throw new DbException(e);
+		} catch (SQLException | IllegalArgumentException | SecurityException e) {
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
 		} finally {
 			close(state);
 			close(con);
@@ -173,19 +514,26 @@ public class Query {
 	}
 
 	/**
-	 * Execute a "select" query and return a list of results where each row is an
-	 * instance of clazz. Returns an empty list if there are no results.
+	 * Execute a "select" query and return an iterator that reads rows from the
+	 * open ResultSet one at a time, rather than loading them all into memory. Each
+	 * row is an instance of clazz, which may be a pojo, a Map, or a primitive.
+	 * <p>
+	 * The iterator holds a connection, a statement, and a result set open until it
+	 * is closed or exhausted, so use it in a try-with-resources block. If the query
+	 * is part of a transaction, the transaction's connection is left open.
+	 * </p>
+	 * <p>
+	 * Many drivers read the entire result set into memory unless you also set a
+	 * {@link #fetchSize(int)}. Postgres only honors the fetch size when autocommit
+	 * is off, so run the query inside a {@link Transaction}. MySQL streams rows
+	 * only when the fetch size is Integer.MIN_VALUE.
+	 * </p>
 	 */
-	@SuppressWarnings("unchecked")
-	public <T> List<T> results(Class<T> clazz) {
-
-		if (Map.class.isAssignableFrom(clazz)) {
-			return (List<T>) resultsMap((Class<Map<String, Object>>) clazz);
-		}
+	public <T> ResultIterator<T> iterate(Class<T> clazz) {
 
-		List<T> out = new ArrayList<>();
 		Connection con = null;
 		PreparedStatement state = null;
+		ResultSet rs = null;
 
 		try {
 			if (sql == null) {
@@ -194,56 +542,46 @@ public class Query {
 
 			Connection localCon;
 			if (transaction == null) {
-				localCon = db.getConnection();
-				con = localCon; // con gets closed below if non-null
+				localCon = primary ? db.getConnection() : db.getReadConnection();
+				con = localCon; // con gets closed by the iterator if non-null
 			} else {
-				localCon = transaction.getConnection();
+				localCon = transaction.getReadConnection();
 			}
 
 			state = localCon.prepareStatement(sql);
 			loadArgs(state);
 
 			LatencyTimer myLatencyTimer = new LatencyTimer( this );
-			ResultSet rs = state.executeQuery();
+			rs = state.executeQuery();
 			myLatencyTimer.stop( sql, args );
 
 			meta = rs.getMetaData();
-			int colCount = meta.getColumnCount();
-
-			if (Util.isPrimitiveOrString(clazz) || clazz.getPackage().getName().startsWith("java.sql")) {
-				// if the receiver class is a primitive or jdbc type just grab the first column
-				// and assign it
-				while (rs.next()) {
-					Object colValue = rs.getObject(1);
-					out.add((T) colValue);
-				}
-
-			} else {
-				PojoInfo pojoInfo = sqlMaker.getPojoInfo(clazz);
-				while (rs.next()) {
-					T row = clazz.getDeclaredConstructor().newInstance();
+			RowMapper<T> mapper = sqlMaker.getRowMapper(clazz, meta);
 
-					for (int i = 1; i <= colCount; i++) {
-						String colName = meta.getColumnLabel(i);
-						Object colValue = sqlMaker.convertValue(rs.getObject(i), meta.getColumnTypeName(i));
+			return new ResultIterator<>(this, mapper, rs, state, con);
 
-						pojoInfo.putValue(row, colName, colValue, true);
-					}
-					out.add(row);
-				}
+		} catch (SQLException | RuntimeException e) {
+			close(rs);
+			close(state);
+			close(con);
+			if (e instanceof DbException) {
+				throw (DbException) e;
 			}
-
-		} catch (InstantiationException | IllegalAccessException | SQLException | IllegalArgumentException
-				| InvocationTargetException | NoSuchMethodException | SecurityException e) {
 			DbException dbe = new DbException(e);
 			dbe.setSql(sql);
 			throw dbe;
-		} finally {
-			close(state);
-			close(con);
 		}
+	}
 
-		return out;
+	/**
+	 * Execute a "select" query and return the rows as a lazily-populated Stream.
+	 * The Stream is backed by an open ResultSet, so it must be closed after use,
+	 * preferably in a try-with-resources block. See {@link #iterate(Class)}.
+	 */
+	public <T> Stream<T> stream(Class<T> clazz) {
+		ResultIterator<T> it = iterate(clazz);
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(it::close);
 	}
 
 	private void loadArgs(PreparedStatement state) throws SQLException {
@@ -252,9 +590,12 @@ public class Query {
 				state.setObject(i + 1, args[i]);
 			}
 		}
+		if (fetchSize != 0) {
+			state.setFetchSize(fetchSize);
+		}
 	}
 
-	private void close(AutoCloseable ac) {
+	void close(AutoCloseable ac) {
 		if (ac == null) {
 			return;
 		}
@@ -268,9 +609,16 @@ public class Query {
 	/**
 	 * Insert a row into a table. The row pojo can have a @Table annotation to
 	 * specify the table, or you can specify the table with the .table() method.
+	 * If the query is part of a transaction with deferred writes, the insert is
+	 * held until the transaction is flushed or committed.
 	 */
 	public Query insert(Object row) {
 
+		if (isDeferred()) {
+			transaction.defer(Transaction.WriteKind.INSERT, table, row);
+			return this;
+		}
+
 		if (this.generatedKeyReceiver == null) {
 			PojoInfo pojoInfo = sqlMaker.getPojoInfo(row.getClass());
 			String[] names = pojoInfo.getGeneratedColumnNames();
@@ -283,36 +631,437 @@ public class Query {
 		sql = sqlMaker.getInsertSql(this, row);
 		args = sqlMaker.getInsertArgs(this, row);
 
-		execute();
+		executeUpdate();
+		invalidateCaches(Collections.singletonList(row));
+		trackIdentities(Collections.singletonList(row), false);
 
 		return this;
 	}
 
+	/**
+	 * Insert a collection of rows using JDBC batching, sending up to batchSize
+	 * rows to the database per round trip. Rows of different classes are grouped
+	 * by class. See also {@link #multiRowInsert(boolean)}. If the row class has @GeneratedValue columns, the generated keys
+	 * are put back into the pojos, provided the driver returns them for batches.
+	 * Call .getRowsAffected() to get the total, or .getBatchRowsAffected() for the
+	 * per-row counts.
+	 */
+	public Query insertAll(Collection<?> rows) {
+
+		int total = 0;
+		List<int[]> allCounts = new ArrayList<>();
+
+		for (List<Object> group : groupByClass(rows).values()) {
+			Object first = group.get(0);
+			PojoInfo pojoInfo = sqlMaker.getPojoInfo(first.getClass());
+			String[] names = fetchGeneratedKeys ? pojoInfo.getGeneratedColumnNames() : null;
+
+			if (multiRowInsert) {
+				Class<?> rowClass = first.getClass();
+				int argCount = sqlMaker.getInsertArgs(this, first).length;
+				allCounts.add(executeMultiRow(group, n -> sqlMaker.getMultiRowInsertSql(this, rowClass, n),
+						row -> sqlMaker.getInsertArgs(this, row), argCount, names));
+			} else {
+				allCounts.add(executeBatch(sqlMaker.getInsertSql(this, first), group,
+						row -> sqlMaker.getInsertArgs(this, row), names));
+			}
+			total += rowsAffected;
+		}
+
+		rowsAffected = total;
+		batchRowsAffected = concat(allCounts);
+		invalidateCaches(rows);
+		if (fetchGeneratedKeys) {
+			trackIdentities(rows, false);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns true if this query's writes should be held by the transaction
+	 * until it commits.
+	 */
+	private boolean isDeferred() {
+		return transaction != null && transaction.isDeferWrites();
+	}
+
+	/**
+	 * If dirty tracking is on, re-snapshot any of the rows that are tracked, after
+	 * they have been written in full.
+	 */
+	private void refreshSnapshots(Collection<?> rows) {
+		DirtyTracker tracker = db.getDirtyTracker();
+		if (tracker == null) {
+			return;
+		}
+		for (Object row : rows) {
+			if (tracker.get(row) != null) {
+				tracker.snapshot(row, sqlMaker.getUpdateArgs(this, row));
+			}
+		}
+	}
+
+	private void forgetSnapshots(Collection<?> rows) {
+		DirtyTracker tracker = db.getDirtyTracker();
+		if (tracker == null) {
+			return;
+		}
+		for (Object row : rows) {
+			tracker.remove(row);
+		}
+	}
+
+	/**
+	 * Drop cached query results for the rows' tables, and remove the rows from
+	 * the Database's RowCache, if it has one. If the query is part of a
+	 * transaction, this is done again when it commits, in case another thread
+	 * cached the old values in the meantime.
+	 */
+	private void invalidateCaches(Collection<?> rows) {
+		if (table != null) {
+			invalidateCachedQueries(table);
+		} else {
+			for (Class<?> rowClass : groupByClass(rows).keySet()) {
+				PojoInfo pojoInfo = sqlMaker.getPojoInfo(rowClass);
+				if (pojoInfo instanceof StandardPojoInfo) {
+					invalidateCachedQueries(((StandardPojoInfo) pojoInfo).table);
+				} else {
+					invalidateCachedQueries(null);
+				}
+			}
+		}
+
+		RowCache cache = db.getRowCache();
+		if (cache == null) {
+			return;
+		}
+		for (Object row : rows) {
+			if (getKeyedPojoInfo(row.getClass()) == null) {
+				continue;
+			}
+			Class<?> rowClass = row.getClass();
+			List<Object> key = rowCacheKey(sqlMaker.getDeleteArgs(this, row));
+			db.invalidateCachedRow(cache, rowClass, key);
+			if (transaction != null) {
+				transaction.onCommit(() -> db.invalidateCachedRow(cache, rowClass, key));
+			}
+		}
+	}
+
+	/**
+	 * Put written rows in the transaction's identity map, so a later findById()
+	 * returns the same instance, or take deleted rows out of it.
+	 */
+	private void trackIdentities(Collection<?> rows, boolean deleted) {
+		if (table != null || transaction == null || !transaction.isIdentityMap()) {
+			return;
+		}
+		for (Object row : rows) {
+			if (getKeyedPojoInfo(row.getClass()) == null) {
+				continue;
+			}
+			List<Object> key = rowCacheKey(sqlMaker.getDeleteArgs(this, row));
+			if (deleted) {
+				transaction.removeIdentity(row.getClass(), key);
+			} else {
+				transaction.putIdentity(row.getClass(), key, row);
+			}
+		}
+	}
+
+	/**
+	 * Returns the rows with only the last of any that share a primary key. Rows
+	 * with a null key value are all kept, and so are rows with a generated key,
+	 * which isn't sent and so can't conflict.
+	 */
+	private List<Object> lastByKey(List<Object> rows) {
+		StandardPojoInfo pojoInfo = getKeyedPojoInfo(rows.get(0).getClass());
+		if (pojoInfo == null) {
+			return rows;
+		}
+		if (pojoInfo.generatedColumnNames != null) {
+			for (String name : pojoInfo.generatedColumnNames) {
+				if (pojoInfo.primaryKeyNames.contains(name)) {
+					return rows;
+				}
+			}
+		}
+		Map<List<Object>, Integer> last = new HashMap<>();
+		for (int i = 0; i < rows.size(); i++) {
+			List<Object> key = rowCacheKey(sqlMaker.getDeleteArgs(this, rows.get(i)));
+			if (!key.contains(null)) {
+				last.put(key, i);
+			}
+		}
+		List<Object> unique = new ArrayList<>(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			List<Object> key = rowCacheKey(sqlMaker.getDeleteArgs(this, rows.get(i)));
+			Integer pos = last.get(key);
+			if (pos == null || pos == i) {
+				unique.add(rows.get(i));
+			}
+		}
+		return unique;
+	}
+
+	/**
+	 * Returns the pojo info for the class if it has a primary key, or null.
+	 */
+	private StandardPojoInfo getKeyedPojoInfo(Class<?> rowClass) {
+		if (Map.class.isAssignableFrom(rowClass)) {
+			return null;
+		}
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(rowClass);
+		if (!(pojoInfo instanceof StandardPojoInfo) || ((StandardPojoInfo) pojoInfo).primaryKeyNames.isEmpty()) {
+			return null;
+		}
+		return (StandardPojoInfo) pojoInfo;
+	}
+
+	/**
+	 * Drop cached query results for the table, or all of them if the table is
+	 * null.
+	 */
+	private void invalidateCachedQueries(String table) {
+		QueryCache cache = db.getQueryCache();
+		cache.invalidate(table);
+		if (transaction != null) {
+			transaction.onCommit(() -> cache.invalidate(table));
+		}
+	}
+
+	/**
+	 * Integer keys may be given as an int but read from the pojo as a long, so
+	 * store them all as longs.
+	 */
+	private static List<Object> rowCacheKey(Object[] keys) {
+		List<Object> key = new ArrayList<>(keys.length);
+		for (Object k : keys) {
+			if (k instanceof Integer || k instanceof Short || k instanceof Byte) {
+				k = ((Number) k).longValue();
+			}
+			key.add(k);
+		}
+		return key;
+	}
+
+	private Map<Class<?>, List<Object>> groupByClass(Collection<?> rows) {
+		Map<Class<?>, List<Object>> groups = new LinkedHashMap<>();
+		for (Object row : rows) {
+			groups.computeIfAbsent(row.getClass(), k -> new ArrayList<>()).add(row);
+		}
+		return groups;
+	}
+
+	private int[] concat(List<int[]> arrays) {
+		if (arrays.size() == 1) {
+			return arrays.get(0);
+		}
+		int len = 0;
+		for (int[] arr : arrays) {
+			len += arr.length;
+		}
+		int[] out = new int[len];
+		int pos = 0;
+		for (int[] arr : arrays) {
+			System.arraycopy(arr, 0, out, pos, arr.length);
+			pos += arr.length;
+		}
+		return out;
+	}
+
 	/**
 	 * Upsert a row into a table. See http://en.wikipedia.org/wiki/Merge_%28SQL%29
 	 */
 	public Query upsert(Object row) {
 
+		if (this.generatedKeyReceiver == null && sqlMaker.supportsUpsertGeneratedKeys()) {
+			PojoInfo pojoInfo = sqlMaker.getPojoInfo(row.getClass());
+			String[] names = pojoInfo.getGeneratedColumnNames();
+			if (names.length != 0) {
+				this.generatedKeyReceiver = row;
+				this.generatedKeyNames = names;
+			}
+		}
+
 		sql = sqlMaker.getUpsertSql(this, row);
 		args = sqlMaker.getUpsertArgs(this, row);
 
-		execute();
+		executeUpdate();
+		refreshSnapshots(Collections.singletonList(row));
+		invalidateCaches(Collections.singletonList(row));
+		trackIdentities(Collections.singletonList(row), false);
 
 		return this;
 	}
 
+	/**
+	 * Upsert a collection of rows using multi-row statements, sending up to
+	 * batchSize rows per statement. Rows of different classes are grouped by
+	 * class. Requires a SqlMaker that supports it, like MySqlMaker or
+	 * PostgresMaker. On Postgres, generated keys are put back into the pojos.
+	 * <p>
+	 * If several rows have the same primary key, only the last one is sent,
+	 * because Postgres rejects a statement that updates a row twice. The others
+	 * get a count of 0 in getBatchRowsAffected().
+	 * </p>
+	 */
+	public Query upsertAll(Collection<?> rows) {
+
+		int total = 0;
+		List<int[]> allCounts = new ArrayList<>();
+
+		for (List<Object> group : groupByClass(rows).values()) {
+			Object first = group.get(0);
+			Class<?> rowClass = first.getClass();
+			String[] names = null;
+			if (fetchGeneratedKeys && sqlMaker.supportsUpsertGeneratedKeys()) {
+				names = sqlMaker.getPojoInfo(rowClass).getGeneratedColumnNames();
+			}
+			int argCount = sqlMaker.getInsertArgs(this, first).length;
+			List<Object> unique = lastByKey(group);
+			int[] counts = executeMultiRow(unique, n -> sqlMaker.getMultiRowUpsertSql(this, rowClass, n),
+					row -> sqlMaker.getInsertArgs(this, row), argCount, names);
+			if (unique.size() < group.size()) {
+				Map<Object, Integer> positions = new IdentityHashMap<>();
+				for (int i = 0; i < unique.size(); i++) {
+					positions.put(unique.get(i), i);
+				}
+				int[] spread = new int[group.size()];
+				for (int i = 0; i < spread.length; i++) {
+					Integer pos = positions.remove(group.get(i));
+					spread[i] = pos == null ? 0 : counts[pos];
+				}
+				counts = spread;
+			}
+			allCounts.add(counts);
+			total += rowsAffected;
+		}
+
+		rowsAffected = total;
+		batchRowsAffected = concat(allCounts);
+		refreshSnapshots(rows);
+		invalidateCaches(rows);
+		trackIdentities(rows, false);
+		return this;
+	}
+
 	/**
 	 * Update a row in a table. It will match an existing row based on the primary
 	 * key.
+	 * <p>
+	 * If dirty tracking is on (see Database.setDirtyTracking()) and the row was
+	 * loaded by this Database, only the changed columns are written. If nothing
+	 * changed, no statement is sent and getRowsAffected() returns 0.
+	 * </p>
+	 * <p>
+	 * If the query is part of a transaction with deferred writes, the update is
+	 * held until the transaction is flushed or committed.
+	 * </p>
 	 */
 	public Query update(Object row) {
 
-		sql = sqlMaker.getUpdateSql(this, row);
-		args = sqlMaker.getUpdateArgs(this, row);
+		if (isDeferred()) {
+			transaction.defer(Transaction.WriteKind.UPDATE, table, row);
+			return this;
+		}
+
+		DirtyTracker tracker = db.getDirtyTracker();
+		Object[] snapshot = tracker == null ? null : tracker.get(row);
+		Object[] values = null;
 
-		if (execute().getRowsAffected() <= 0) {
+		if (snapshot != null) {
+			values = sqlMaker.getUpdateArgs(this, row);
+			BitSet changed = DirtyTracker.diff(snapshot, values);
+			if (changed.isEmpty()) {
+				rowsAffected = 0;
+				return this;
+			}
+			sql = sqlMaker.getUpdateSql(this, row, changed);
+			args = sqlMaker.getUpdateArgs(this, row, changed);
+		} else {
+			sql = sqlMaker.getUpdateSql(this, row);
+			args = sqlMaker.getUpdateArgs(this, row);
+		}
+
+		executeUpdate();
+		if (rowsAffected <= 0) {
 			throw new DbException("Row not updated because the primary key was not found");
 		}
+		if (snapshot != null) {
+			tracker.snapshot(row, values);
+		}
+		invalidateCaches(Collections.singletonList(row));
+		trackIdentities(Collections.singletonList(row), false);
+		return this;
+	}
+
+	/**
+	 * Update a collection of rows using JDBC batching, matching each row on its
+	 * primary key. Rows of different classes are grouped by class. Call
+	 * .getBatchRowsAffected() for the per-row counts. Throws an exception if any
+	 * row was not found, after the other rows have been updated; use a
+	 * transaction if the update must be all or nothing.
+	 */
+	public Query updateAll(Collection<?> rows) {
+
+		int total = 0;
+		List<int[]> allCounts = new ArrayList<>();
+
+		for (List<Object> group : groupByClass(rows).values()) {
+			Object first = group.get(0);
+			allCounts.add(executeBatch(sqlMaker.getUpdateSql(this, first), group,
+					row -> sqlMaker.getUpdateArgs(this, row), null));
+			total += rowsAffected;
+		}
+
+		rowsAffected = total;
+		batchRowsAffected = concat(allCounts);
+		refreshSnapshots(rows);
+		invalidateCaches(rows);
+		trackIdentities(rows, false);
+
+		int notFound = 0;
+		for (int count : batchRowsAffected) {
+			if (count == 0) {
+				notFound++;
+			}
+		}
+		if (notFound > 0) {
+			throw new DbException(notFound + " row(s) not updated because the primary key was not found");
+		}
+		return this;
+	}
+
+	/**
+	 * Delete a collection of rows by primary key using JDBC batching. Rows of
+	 * different classes are grouped by class. See also
+	 * {@link #multiRowDelete(boolean)}.
+	 */
+	public Query deleteAll(Collection<?> rows) {
+
+		int total = 0;
+		List<int[]> allCounts = new ArrayList<>();
+
+		for (List<Object> group : groupByClass(rows).values()) {
+			Object first = group.get(0);
+			if (multiRowDelete) {
+				Class<?> rowClass = first.getClass();
+				int argCount = sqlMaker.getDeleteArgs(this, first).length;
+				allCounts.add(executeMultiRow(group, n -> sqlMaker.getMultiRowDeleteSql(this, rowClass, n),
+						row -> sqlMaker.getDeleteArgs(this, row), argCount, null));
+			} else {
+				allCounts.add(executeBatch(sqlMaker.getDeleteSql(this, first), group,
+						row -> sqlMaker.getDeleteArgs(this, row), null));
+			}
+			total += rowsAffected;
+		}
+
+		rowsAffected = total;
+		batchRowsAffected = concat(allCounts);
+		forgetSnapshots(rows);
+		invalidateCaches(rows);
+		trackIdentities(rows, true);
 		return this;
 	}
 
@@ -322,6 +1071,13 @@ public class Query {
 	 * object. To see how the command did, call .rowsAffected().
 	 */
 	public Query execute() {
+		executeUpdate();
+		// without a .table(), the sql may have written to any table
+		invalidateCachedQueries(table);
+		return this;
+	}
+
+	private void executeUpdate() {
 
 		Connection con = null;
 		PreparedStatement state = null;
@@ -343,21 +1099,7 @@ public class Query {
 				state = localCon.prepareStatement(sql);
 			}
 
-			if (args != null) {
-				for (int i = 0; i < args.length; i++) {
-					Object arg = args[i];
-
-					/*
-					 * The purpose of this is to allow List args to be inserted into JDBC array
-					 * fields. Postgres JDBC drivers do not handle this correctly.
-					 */
-					if (arg != null && List.class.isAssignableFrom(arg.getClass())) {
-						arg = ((List<?>) arg).toArray();
-					}
-
-					state.setObject(i + 1, arg);
-				}
-			}
+			setArgs(state, args);
 
 			LatencyTimer myTimer = new LatencyTimer( this );
 			rowsAffected = state.executeUpdate();
@@ -374,25 +1116,263 @@ public class Query {
 		} finally {
 			close(state);
 			close(con);
+			if (con != null) {
+				db.noteWrite();
+			}
 		}
+	}
 
-		return this;
+	private void setArgs(PreparedStatement state, Object[] args) throws SQLException {
+		if (args != null) {
+			for (int i = 0; i < args.length; i++) {
+				Object arg = args[i];
+
+				/*
+				 * The purpose of this is to allow List args to be inserted into JDBC array
+				 * fields. Postgres JDBC drivers do not handle this correctly.
+				 */
+				if (arg != null && List.class.isAssignableFrom(arg.getClass())) {
+					arg = ((List<?>) arg).toArray();
+				}
+
+				state.setObject(i + 1, arg);
+			}
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private void populateGeneratedKeys(PreparedStatement state, Object generatedKeyReceiver,
+	/**
+	 * Execute the sql once for each row using JDBC batching, sending at most
+	 * batchSize rows per round trip. getArgs supplies the parameters for each row.
+	 * If generatedKeyNames is non-empty, the generated keys are put back into the
+	 * rows. Returns the number of rows affected by each statement.
+	 * <p>
+	 * If the query isn't part of a transaction, each chunk of rows is committed
+	 * as a unit rather than one row at a time.
+	 * </p>
+	 */
+	private int[] executeBatch(String sql, List<?> rows, Function<Object, Object[]> getArgs,
 			String[] generatedKeyNames) {
 
-		ResultSet rs = null;
+		this.sql = sql;
+		int[] counts = new int[rows.size()];
+
+		Connection con = null;
+		PreparedStatement state = null;
+		boolean restoreAutoCommit = false;
 
 		try {
-			boolean isMap = Map.class.isAssignableFrom(generatedKeyReceiver.getClass());
 
-			PojoInfo pojoInfo = null;
-			if (!isMap) {
-				pojoInfo = sqlMaker.getPojoInfo(generatedKeyReceiver.getClass());
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+				if (localCon.getAutoCommit()) {
+					localCon.setAutoCommit(false);
+					restoreAutoCommit = true;
+				}
+			} else {
+				localCon = transaction.getConnection();
 			}
 
+			boolean getKeys = generatedKeyNames != null && generatedKeyNames.length > 0;
+			if (getKeys) {
+				state = localCon.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			} else {
+				state = localCon.prepareStatement(sql);
+			}
+
+			int chunkSize = batchSize > 0 ? batchSize : rows.size();
+			for (int start = 0; start < rows.size(); start += chunkSize) {
+				List<?> chunk = rows.subList(start, Math.min(start + chunkSize, rows.size()));
+
+				for (Object row : chunk) {
+					setArgs(state, getArgs.apply(row));
+					state.addBatch();
+				}
+
+				LatencyTimer myTimer = new LatencyTimer( this );
+				int[] chunkCounts = state.executeBatch();
+				// the first row's args stand in for the batch if the plan is captured
+				myTimer.stop( sql, getArgs.apply(chunk.get(0)) );
+
+				System.arraycopy(chunkCounts, 0, counts, start, Math.min(chunkCounts.length, chunk.size()));
+
+				if (getKeys) {
+					populateGeneratedKeys(state, chunk, generatedKeyNames);
+				}
+
+				if (restoreAutoCommit) {
+					localCon.commit();
+				}
+			}
+
+		} catch (SQLException | IllegalArgumentException e) {
+			if (restoreAutoCommit) {
+				rollback(con);
+			}
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			if (restoreAutoCommit) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// bury it, the pool resets it anyway
+				}
+			}
+			close(con);
+			if (con != null) {
+				db.noteWrite();
+			}
+		}
+
+		batchRowsAffected = counts;
+		rowsAffected = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				rowsAffected += count;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Execute statements that each cover several rows, such as multi-row inserts
+	 * or "delete ... where id in (?,?,?)". sqlForRowCount supplies the sql for a
+	 * given number of rows, and getArgs the argCount parameters for each row. Each
+	 * statement covers up to batchSize rows, further limited by the maximum
+	 * number of parameters the database accepts. To keep the number of distinct
+	 * statements small, a partial chunk at the end is split into power-of-two
+	 * sizes.
+	 */
+	private int[] executeMultiRow(List<?> rows, IntFunction<String> sqlForRowCount,
+			Function<Object, Object[]> getArgs, int argCount, String[] generatedKeyNames) {
+
+		int maxRows = Math.max(1, sqlMaker.getMaxParameters() / Math.max(1, argCount));
+		if (batchSize > 0) {
+			maxRows = Math.min(maxRows, batchSize);
+		}
+
+		int[] counts = new int[rows.size()];
+
+		Connection con = null;
+		PreparedStatement state = null;
+		int stateRowCount = 0;
+		int total = 0;
+		boolean restoreAutoCommit = false;
+		boolean getKeys = generatedKeyNames != null && generatedKeyNames.length > 0;
+
+		try {
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+				if (localCon.getAutoCommit()) {
+					localCon.setAutoCommit(false);
+					restoreAutoCommit = true;
+				}
+			} else {
+				localCon = transaction.getConnection();
+			}
+
+			int start = 0;
+			while (start < rows.size()) {
+				int remaining = rows.size() - start;
+				int chunkRows = remaining >= maxRows ? maxRows : Integer.highestOneBit(remaining);
+				List<?> chunk = rows.subList(start, start + chunkRows);
+
+				if (state == null || stateRowCount != chunkRows) {
+					close(state);
+					sql = sqlForRowCount.apply(chunkRows);
+					if (getKeys) {
+						state = localCon.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+					} else {
+						state = localCon.prepareStatement(sql);
+					}
+					stateRowCount = chunkRows;
+				}
+
+				Object[] args = new Object[chunkRows * argCount];
+				for (int i = 0; i < chunkRows; i++) {
+					Object[] rowArgs = getArgs.apply(chunk.get(i));
+					System.arraycopy(rowArgs, 0, args, i * argCount, argCount);
+				}
+				setArgs(state, args);
+
+				LatencyTimer myTimer = new LatencyTimer( this );
+				int count = state.executeUpdate();
+				myTimer.stop( sql, args );
+
+				// there's no per-row count, so report each row as affected if they all were
+				total += count;
+				int rowCount = count == chunkRows ? 1 : Statement.SUCCESS_NO_INFO;
+				Arrays.fill(counts, start, start + chunkRows, rowCount);
+
+				if (getKeys) {
+					populateGeneratedKeys(state, chunk, generatedKeyNames);
+				}
+
+				if (restoreAutoCommit) {
+					localCon.commit();
+				}
+				start += chunkRows;
+			}
+
+		} catch (SQLException | IllegalArgumentException e) {
+			if (restoreAutoCommit) {
+				rollback(con);
+			}
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			if (restoreAutoCommit) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// bury it, the pool resets it anyway
+				}
+			}
+			close(con);
+			if (con != null) {
+				db.noteWrite();
+			}
+		}
+
+		batchRowsAffected = counts;
+		rowsAffected = total;
+		return counts;
+	}
+
+	private void rollback(Connection con) {
+		try {
+			con.rollback();
+		} catch (SQLException e) {
+			// bury it
+		}
+	}
+
+	private void populateGeneratedKeys(PreparedStatement state, Object generatedKeyReceiver,
+			String[] generatedKeyNames) {
+		populateGeneratedKeys(state, Collections.singletonList(generatedKeyReceiver), generatedKeyNames);
+	}
+
+	/**
+	 * Put the generated keys into the receivers, one row of keys per receiver, in
+	 * order. Used for batches, where the driver returns one row of keys per
+	 * statement.
+	 */
+	@SuppressWarnings("unchecked")
+	private void populateGeneratedKeys(PreparedStatement state, List<?> generatedKeyReceivers,
+			String[] generatedKeyNames) {
+
+		ResultSet rs = null;
+
+		try {
 			/*-
 			 * JDBC drivers are inconsistent in the way they handle generated keys.
 			 * MySQL returns a single column named "GENERATED_KEY". The column has the incorrect name, obviously.
@@ -406,7 +1386,18 @@ public class Query {
 			ResultSetMetaData meta = rs.getMetaData();
 			int colCount = meta.getColumnCount();
 
-			if (rs.next()) {
+			for (Object generatedKeyReceiver : generatedKeyReceivers) {
+				if (!rs.next()) {
+					break;
+				}
+
+				boolean isMap = Map.class.isAssignableFrom(generatedKeyReceiver.getClass());
+
+				PojoInfo pojoInfo = null;
+				if (!isMap) {
+					pojoInfo = sqlMaker.getPojoInfo(generatedKeyReceiver.getClass());
+				}
+
 				if (isMap) {
 					Map<String, Object> map = (Map<String, Object>) generatedKeyReceiver;
 					if (colCount == 1) {
@@ -503,14 +1494,23 @@ public class Query {
 	/**
 	 * Delete a row in a table. This method looks for an @Id annotation to find the
 	 * row to delete by primary key, and looks for a @Table annotation to figure out
-	 * which table to hit.
+	 * which table to hit. If the query is part of a transaction with deferred
+	 * writes, the delete is held until the transaction is flushed or committed.
 	 */
 	public Query delete(Object row) {
 
+		if (isDeferred()) {
+			transaction.defer(Transaction.WriteKind.DELETE, table, row);
+			return this;
+		}
+
 		sql = sqlMaker.getDeleteSql(this, row);
 		args = sqlMaker.getDeleteArgs(this, row);
 
-		execute();
+		executeUpdate();
+		forgetSnapshots(Collections.singletonList(row));
+		invalidateCaches(Collections.singletonList(row));
+		trackIdentities(Collections.singletonList(row), true);
 		return this;
 	}
 
@@ -548,6 +1548,74 @@ public class Query {
 		return rowsAffected;
 	}
 
+	/**
+	 * For batch operations such as .insertAll(), .updateAll() and .deleteAll(),
+	 * returns the number of rows affected by each row's statement, in the order
+	 * the rows were given.
+	 * Some drivers return Statement.SUCCESS_NO_INFO (-2) instead of a count.
+	 */
+	public int[] getBatchRowsAffected() {
+		return batchRowsAffected;
+	}
+
+	/**
+	 * Set the maximum number of rows to send to the database in one round trip for
+	 * batch operations such as .insertAll(), .updateAll() and .deleteAll(). The
+	 * default is 1000.
+	 */
+	public Query batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Make .insertAll() send multi-row "insert ... values (?,?),(?,?),..."
+	 * statements instead of a JDBC batch of single-row inserts. Useful for drivers
+	 * that send each statement in a batch as a separate round trip, like SQLite or
+	 * MySQL without rewriteBatchedStatements. The number of rows per statement is
+	 * limited by batchSize and by SqlMaker.getMaxParameters().
+	 */
+	public Query multiRowInsert(boolean multiRowInsert) {
+		this.multiRowInsert = multiRowInsert;
+		return this;
+	}
+
+	/**
+	 * Make .deleteAll() send "delete ... where id in (?,?,?)" statements, or
+	 * "where (k1,k2) in ((?,?),(?,?))" for composite keys, instead of a JDBC
+	 * batch of single-row deletes. There are no per-row counts in this mode.
+	 * Row-value IN lists for composite keys are not supported by every database.
+	 */
+	public Query multiRowDelete(boolean multiRowDelete) {
+		this.multiRowDelete = multiRowDelete;
+		return this;
+	}
+
+	/**
+	 * Specify whether batch inserts should put values of @GeneratedValue columns
+	 * back into the pojos. The default is true. Turning it off saves reading the
+	 * generated keys back from the database.
+	 */
+	public Query fetchGeneratedKeys(boolean fetchGeneratedKeys) {
+		this.fetchGeneratedKeys = fetchGeneratedKeys;
+		return this;
+	}
+
+	/**
+	 * Send this query to the primary even if the Database has replicas. Use it
+	 * for reads that must see the latest data, and for raw sql run with
+	 * results() or first() that modifies the database. See
+	 * {@link Database#addReplica(javax.sql.DataSource)}.
+	 */
+	public Query primary() {
+		this.primary = true;
+		return this;
+	}
+
 	/**
 	 * Specify that this query should be a part of the specified transaction.
 	 */
@@ -556,6 +1624,10 @@ public class Query {
 		return this;
 	}
 
+	public String getSql() {
+		return sql;
+	}
+
 	public String getOrderBy() {
 		return orderBy;
 	}
@@ -587,5 +1659,44 @@ public class Query {
 		return this;
 	}
 
+	/**
+	 * Give the JDBC driver a hint as to how many rows to fetch from the database
+	 * at a time. Mostly useful with {@link #iterate(Class)} and
+	 * {@link #stream(Class)} to keep memory use flat on very large result sets.
+	 */
+	public Query fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
 	public Database getDatabase() { return db; }
+
+	public Transaction getTransaction() {
+		return transaction;
+	}
+
+	/**
+	 * Load a large number of rows using the Database's BulkLoader, which uses
+	 * the fastest path the database offers, for example COPY on Postgres. Rows
+	 * are pulled from the iterator as they are loaded, so the whole dataset never
+	 * needs to be in memory. Generated keys are not put back into the pojos.
+	 * Call .getRowsAffected() to get the number of rows loaded.
+	 */
+	public Query bulkLoad(Class<?> rowClass, Iterator<?> rows) {
+		long count;
+		try {
+			count = db.getBulkLoader().load(this, rowClass, rows);
+		} finally {
+			if (transaction == null) {
+				db.noteWrite();
+			}
+		}
+		rowsAffected = (int) Math.min(count, Integer.MAX_VALUE);
+		invalidateCachedQueries(table != null ? table : ((StandardPojoInfo) sqlMaker.getPojoInfo(rowClass)).table);
+		return this;
+	}
 }
@@ -0,0 +1,18 @@
+package com.dieselpoint.norm;
+
+/**
+ * How Database picks a replica for a read. See Database.addReplica().
+ */
+public enum ReplicaSelection {
+
+	/**
+	 * Use each replica in turn.
+	 */
+	ROUND_ROBIN,
+
+	/**
+	 * Use the replica with the fewest connections checked out by this Database.
+	 * Ties go to the earliest replica added.
+	 */
+	LEAST_IN_FLIGHT
+}
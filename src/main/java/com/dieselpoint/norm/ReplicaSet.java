@@ -0,0 +1,101 @@
+package com.dieselpoint.norm;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * The replica DataSources that Database routes reads to, and the count of
+ * connections checked out from each.
+ */
+class ReplicaSet {
+
+	private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile ReplicaSelection selection = ReplicaSelection.ROUND_ROBIN;
+
+	void add(DataSource ds) {
+		replicas.add(new Replica(ds));
+	}
+
+	boolean isEmpty() {
+		return replicas.isEmpty();
+	}
+
+	int size() {
+		return replicas.size();
+	}
+
+	void setSelection(ReplicaSelection selection) {
+		this.selection = selection;
+	}
+
+	ReplicaSelection getSelection() {
+		return selection;
+	}
+
+	/**
+	 * The number of connections from the replica at this index that haven't been
+	 * closed yet. Only counted for LEAST_IN_FLIGHT.
+	 */
+	int getInFlight(int index) {
+		return replicas.get(index).inFlight.get();
+	}
+
+	Connection getConnection() throws SQLException {
+		if (selection == ReplicaSelection.ROUND_ROBIN) {
+			int i = Math.floorMod(next.getAndIncrement(), replicas.size());
+			return replicas.get(i).ds.getConnection();
+		}
+
+		Replica best = null;
+		for (Replica replica : replicas) {
+			if (best == null || replica.inFlight.get() < best.inFlight.get()) {
+				best = replica;
+			}
+		}
+		best.inFlight.incrementAndGet();
+		try {
+			return best.track(best.ds.getConnection());
+		} catch (SQLException | RuntimeException e) {
+			best.inFlight.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private static class Replica {
+		final DataSource ds;
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		Replica(DataSource ds) {
+			this.ds = ds;
+		}
+
+		/**
+		 * Wrap the connection so that closing it, once, takes it off the
+		 * in-flight count.
+		 */
+		Connection track(Connection con) {
+			AtomicBoolean closed = new AtomicBoolean();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+						if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+							inFlight.decrementAndGet();
+						}
+						try {
+							return method.invoke(con, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					});
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.dieselpoint.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.dieselpoint.norm.sqlmakers.RowMapper;
+
+/**
+ * Iterates over the rows of an open ResultSet, creating one object per row as
+ * it goes. Create it using Query.iterate(). Closing the iterator closes the
+ * ResultSet and the statement, and returns the connection to the pool unless
+ * the query was part of a transaction. The iterator closes itself after the
+ * last row is read.
+ */
+public class ResultIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private final Query query;
+	private final RowMapper<T> mapper;
+	private final ResultSet rs;
+	private final PreparedStatement state;
+	private final Connection con;
+
+	private boolean hasNext;
+	private boolean advanced;
+	private boolean closed;
+
+	// package-private
+	ResultIterator(Query query, RowMapper<T> mapper, ResultSet rs, PreparedStatement state, Connection con) {
+		this.query = query;
+		this.mapper = mapper;
+		this.rs = rs;
+		this.state = state;
+		this.con = con;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		if (!advanced) {
+			try {
+				hasNext = rs.next();
+				advanced = true;
+			} catch (Throwable t) {
+				close();
+				throw wrap(t);
+			}
+			if (!hasNext) {
+				close();
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		advanced = false;
+		try {
+			return mapper.map(rs);
+		} catch (Throwable t) {
+			close();
+			throw wrap(t);
+		}
+	}
+
+	private DbException wrap(Throwable t) {
+		if (t instanceof DbException) {
+			return (DbException) t;
+		}
+		DbException dbe = new DbException(t);
+		dbe.setSql(query.getSql());
+		return dbe;
+	}
+
+	/**
+	 * Close the underlying ResultSet and statement, and release the connection if
+	 * it is not owned by a transaction. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		query.close(rs);
+		query.close(state);
+		query.close(con);
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dieselpoint.norm;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Holds one connection for a run of queries on the current thread, so they
+ * don't each check a connection out of the pool and return it. Open it with
+ * Database.session(), in a try-with-resources block:
+ *
+ * <pre>
+ * try (Session session = db.session()) {
+ * 	Person p = db.where("id=?", id).first(Person.class);
+ * 	List&lt;Order&gt; orders = db.where("personId=?", id).results(Order.class);
+ * }
+ * </pre>
+ * <p>
+ * While the session is open, queries on this thread that aren't part of a
+ * Transaction use its connection, in autocommit mode, and reads go to the
+ * primary rather than to a replica. The connection is checked out when the
+ * first query needs it and returned when the session is closed. Transactions
+ * still get their own connection, and other threads aren't affected. Close the
+ * session on the thread that opened it.
+ * </p>
+ * <p>
+ * If a session is already open on this thread, session() returns one that
+ * shares its connection, and closing the inner one does nothing.
+ * </p>
+ */
+public class Session implements AutoCloseable {
+
+	private final Database db;
+	private final Session outer;
+	private Connection con;
+	private Connection shared;
+	private boolean closed;
+
+	Session(Database db, Session outer) {
+		this.db = db;
+		this.outer = outer;
+	}
+
+	/**
+	 * Returns the session's connection, checking it out of the pool the first
+	 * time. Closing the returned connection does nothing; it is returned to the
+	 * pool when the session is closed.
+	 */
+	public Connection getConnection() {
+		if (outer != null) {
+			return outer.getConnection();
+		}
+		if (closed) {
+			throw new DbException("Session is closed");
+		}
+		if (con == null) {
+			con = db.openConnection();
+			Connection target = con;
+			shared = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "close":
+							return null;
+						case "isClosed":
+							return closed || target.isClosed();
+						default:
+							try {
+								return method.invoke(target, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					});
+		}
+		return shared;
+	}
+
+	public boolean isNested() {
+		return outer != null;
+	}
+
+	@Override
+	public void close() {
+		if (outer != null || closed) {
+			return;
+		}
+		closed = true;
+		db.endSession(this);
+		if (con != null) {
+			try {
+				con.close();
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+}
@@ -5,6 +5,10 @@ import com.dieselpoint.norm.latency.LatencyTimer;
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a database transaction. Create it using Transaction trans =
@@ -16,6 +20,10 @@ import java.sql.Connection;
  * or rolled back.
  * </p>
  * <p>
+ * In deferred mode (see {@link #deferWrites(boolean)}), single-row inserts,
+ * updates, and deletes are held in memory and sent as batches at commit().
+ * </p>
+ * <p>
  * This is just a convenience class. If the implementation is too restrictive,
  * then you can manage your own transactions by calling Database.getConnection()
  * and operate on the Connection directly.
@@ -26,6 +34,16 @@ public class Transaction implements Closeable {
 	private Database db;
 	private long maxLatency;
 
+	private boolean deferWrites;
+	private List<PendingWrites> pending = new ArrayList<>();
+	// the most recent group of pending writes for each table
+	private Map<String, PendingWrites> lastPending = new HashMap<>();
+	private List<Runnable> onCommit = new ArrayList<>();
+	// null unless the identity map is on
+	private Map<Class<?>, Map<List<Object>, Object>> identities;
+	// true once the connection has been handed out for something other than a select
+	private boolean wrote;
+
 	Transaction() {
 		this.maxLatency = -1;
 	}
@@ -49,6 +67,12 @@ public class Transaction implements Closeable {
 	}
 
 	public void commit() {
+		try {
+			flush();
+		} catch (Throwable t) {
+			rollback();
+			throw t;
+		}
 		try {
 			LatencyTimer myLatencyTimer = new LatencyTimer( this );
 			con.commit();
@@ -62,9 +86,26 @@ public class Transaction implements Closeable {
 				throw new DbException(t);
 			}
 		}
+		if (wrote) {
+			db.noteWrite();
+		}
+		if (identities != null) {
+			identities.clear();
+		}
+		List<Runnable> actions = onCommit;
+		onCommit = new ArrayList<>();
+		for (Runnable action : actions) {
+			action.run();
+		}
 	}
 
 	public void rollback() {
+		pending.clear();
+		lastPending.clear();
+		onCommit.clear();
+		if (identities != null) {
+			identities.clear();
+		}
 		try {
 			con.rollback();
 		} catch (Throwable t) {
@@ -78,7 +119,25 @@ public class Transaction implements Closeable {
 		}
 	}
 
+	/**
+	 * Returns the transaction's connection. Pending deferred writes are sent
+	 * first, so that whatever is done with the connection comes after them.
+	 * The transaction counts as a write when it commits, for the purposes of
+	 * Database.setReadYourWritesMillis().
+	 */
 	public Connection getConnection() {
+		flush();
+		wrote = true;
+		return con;
+	}
+
+	/**
+	 * Same as getConnection(), but for a select, so it doesn't make the
+	 * transaction count as a write.
+	 */
+	// package-private
+	Connection getReadConnection() {
+		flush();
 		return con;
 	}
 
@@ -92,6 +151,138 @@ public class Transaction implements Closeable {
 
 	public Database getDatabase() { return db; }
 
+	/**
+	 * Turn deferred mode on or off. In deferred mode, Query.insert(), update()
+	 * and delete() on a pojo don't go to the database right away. The writes
+	 * are collected, grouped by table and type of statement, and sent as JDBC
+	 * batches using insertAll(), updateAll() and deleteAll() when the
+	 * transaction commits or flush() is called. Generated keys are put into the
+	 * pojos at that time.
+	 * <p>
+	 * Writes to the same table are sent in the order they were made. Writes to
+	 * different tables may be reordered: each batch is sent in the order of its
+	 * first write. Call flush() when the order of writes across tables matters.
+	 * </p>
+	 * <p>
+	 * Anything else that uses the transaction's connection, such as a select,
+	 * an upsert, insertAll(), or raw sql, sends the pending writes first, so it
+	 * sees them and runs after them.
+	 * </p>
+	 */
+	public Transaction deferWrites(boolean deferWrites) {
+		if (!deferWrites) {
+			flush();
+		}
+		this.deferWrites = deferWrites;
+		return this;
+	}
+
+	public boolean isDeferWrites() {
+		return deferWrites;
+	}
+
+	/**
+	 * Turn the identity map on or off. When it is on, each row this transaction
+	 * loads, inserts, or updates is remembered by class and primary key.
+	 * Query.findById() in the transaction then returns the same instance
+	 * without a round trip, and a select that returns the row again returns
+	 * that instance in place of a new one, even if the instance has been
+	 * changed since. Rows read with .sql() or .table() are not included. The
+	 * map is discarded on commit and rollback.
+	 */
+	public Transaction identityMap(boolean identityMap) {
+		this.identities = identityMap ? new HashMap<>() : null;
+		return this;
+	}
+
+	public boolean isIdentityMap() {
+		return identities != null;
+	}
+
+	/**
+	 * Send any pending deferred writes to the database.
+	 */
+	public void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<PendingWrites> writes = pending;
+		pending = new ArrayList<>();
+		lastPending.clear();
+		for (PendingWrites group : writes) {
+			Query query = new Query(db).transaction(this).table(group.table);
+			switch (group.kind) {
+			case INSERT:
+				query.insertAll(group.rows);
+				break;
+			case UPDATE:
+				query.updateAll(group.rows);
+				break;
+			case DELETE:
+				query.deleteAll(group.rows);
+				break;
+			}
+		}
+	}
+
+	// package-private
+	void defer(WriteKind kind, String table, Object row) {
+		String tableKey = table != null ? table : row.getClass().getName();
+		PendingWrites group = lastPending.get(tableKey);
+		if (group == null || group.kind != kind || group.rowClass != row.getClass()) {
+			group = new PendingWrites(kind, table, row.getClass());
+			pending.add(group);
+			lastPending.put(tableKey, group);
+		}
+		group.rows.add(row);
+	}
+
+	// package-private
+	Object getIdentity(Class<?> rowClass, List<Object> key) {
+		Map<List<Object>, Object> rows = identities.get(rowClass);
+		return rows == null ? null : rows.get(key);
+	}
+
+	// package-private
+	void putIdentity(Class<?> rowClass, List<Object> key, Object row) {
+		identities.computeIfAbsent(rowClass, k -> new HashMap<>()).put(key, row);
+	}
+
+	// package-private
+	void removeIdentity(Class<?> rowClass, List<Object> key) {
+		Map<List<Object>, Object> rows = identities.get(rowClass);
+		if (rows != null) {
+			rows.remove(key);
+		}
+	}
+
+	// package-private
+	void onCommit(Runnable action) {
+		onCommit.add(action);
+	}
+
+	// package-private
+	enum WriteKind {
+		INSERT, UPDATE, DELETE
+	}
+
+	/**
+	 * A run of writes of the same kind to the same table, which can go in one
+	 * batch.
+	 */
+	private static class PendingWrites {
+		final WriteKind kind;
+		final String table;
+		final Class<?> rowClass;
+		final List<Object> rows = new ArrayList<>();
+
+		PendingWrites(WriteKind kind, String table, Class<?> rowClass) {
+			this.kind = kind;
+			this.table = table;
+			this.rowClass = rowClass;
+		}
+	}
+
 	/**
 	 * sets the maximum acceptable latency for this transaction. Must be called before {@link #commit()}.
 	 * <br>If latency of the query exceeds the threshold then the
@@ -0,0 +1,281 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts rows asynchronously. Callers hand rows to insert(), which returns as
+ * soon as the row is on the queue; a background thread collects the rows and
+ * writes them with Query.insertAll(), grouped by class, when flushSize rows have
+ * accumulated or flushIntervalMillis has passed since the first of them
+ * arrived. Create it with Database.writeBehind().
+ * <p>
+ * The queue is bounded. When it is full, insert() blocks until there is room,
+ * so a slow database pushes back on the callers rather than using up memory.
+ * </p>
+ * <p>
+ * Rows are written in their own transactions, so a write that fails does not
+ * reach the caller. Failures are logged through slf4j and counted in
+ * getRowsFailed(). Generated keys are not put back into the pojos. Call close()
+ * before shutting down to write any rows still on the queue.
+ * </p>
+ */
+public class WriteBehindWriter implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteBehindWriter.class);
+
+	// wakes up the background thread without adding a row
+	private static final Object WAKE_UP = new Object();
+
+	private final Database db;
+	private final BlockingQueue<Object> queue;
+	private final int flushSize;
+	private final long flushIntervalMillis;
+	private final Thread thread;
+
+	private volatile boolean multiRowInsert;
+	private volatile boolean closed;
+	private volatile boolean flushRequested;
+
+	// guarded by this
+	private long rowsQueued;
+	private long rowsDone;
+
+	private volatile long rowsWritten;
+	private volatile long rowsFailed;
+	private volatile long flushCount;
+	private volatile long lastFlushMillis;
+	private volatile long maxFlushMillis;
+	private volatile long totalFlushMillis;
+
+	// package-private
+	WriteBehindWriter(Database db, int queueCapacity, int flushSize, long flushIntervalMillis) {
+		if (queueCapacity <= 0 || flushSize <= 0 || flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("queueCapacity, flushSize, and flushIntervalMillis must be positive");
+		}
+		this.db = db;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.flushSize = flushSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+
+		thread = new Thread(this::run, "norm-write-behind");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Send rows as multi-row insert statements rather than JDBC batches. See
+	 * Query.multiRowInsert().
+	 */
+	public WriteBehindWriter multiRowInsert(boolean multiRowInsert) {
+		this.multiRowInsert = multiRowInsert;
+		return this;
+	}
+
+	/**
+	 * Queue a row for insert. Blocks if the queue is full.
+	 */
+	public void insert(Object row) {
+		try {
+			put(row, -1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Queue a row for insert, waiting up to the given time for room in the queue.
+	 *
+	 * @return false if the queue stayed full
+	 */
+	public boolean insert(Object row, long timeout, TimeUnit unit) throws InterruptedException {
+		return put(row, unit.toNanos(timeout));
+	}
+
+	private boolean put(Object row, long timeoutNanos) throws InterruptedException {
+		if (row == null) {
+			throw new NullPointerException();
+		}
+		if (closed) {
+			throw new DbException("WriteBehindWriter is closed");
+		}
+		if (timeoutNanos < 0) {
+			queue.put(row);
+		} else if (!queue.offer(row, timeoutNanos, TimeUnit.NANOSECONDS)) {
+			return false;
+		}
+		// close() may have drained the queue for the last time since the check
+		// above. If the row is still there nobody will write it, so take it back.
+		if (closed && queue.removeIf(queued -> queued == row)) {
+			throw new DbException("WriteBehindWriter is closed");
+		}
+		synchronized (this) {
+			rowsQueued++;
+		}
+		return true;
+	}
+
+	/**
+	 * Write everything queued so far and wait until it is done.
+	 */
+	public void flush() {
+		long target;
+		synchronized (this) {
+			target = rowsQueued;
+		}
+		flushRequested = true;
+		// if the queue is full the thread isn't waiting anyway
+		queue.offer(WAKE_UP);
+		try {
+			synchronized (this) {
+				while (rowsDone < target && thread.isAlive()) {
+					wait(100);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Stop accepting rows, write what is left on the queue, and stop the
+	 * background thread.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		flush();
+		queue.offer(WAKE_UP);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException(e);
+		}
+
+		// rows that were put while close() was running
+		List<Object> rest = new ArrayList<>();
+		queue.drainTo(rest);
+		rest.removeIf(row -> row == WAKE_UP);
+		write(rest);
+	}
+
+	private void run() {
+		List<Object> buf = new ArrayList<>(flushSize);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				Object first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				if (first != WAKE_UP) {
+					buf.add(first);
+				}
+
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+				while (buf.size() < flushSize && !flushRequested && !closed) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						break;
+					}
+					Object row = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (row == null) {
+						break;
+					}
+					if (row != WAKE_UP) {
+						buf.add(row);
+					}
+				}
+				// pick up whatever else is ready, up to the limit
+				while (buf.size() < flushSize) {
+					Object row = queue.poll();
+					if (row == null) {
+						break;
+					}
+					if (row != WAKE_UP) {
+						buf.add(row);
+					}
+				}
+				if (queue.isEmpty()) {
+					flushRequested = false;
+				}
+
+				write(buf);
+				buf.clear();
+
+			} catch (InterruptedException e) {
+				// only close() stops this thread
+			}
+		}
+	}
+
+	private void write(List<Object> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			new Query(db).batchSize(flushSize).multiRowInsert(multiRowInsert).fetchGeneratedKeys(false)
+					.insertAll(rows);
+			rowsWritten += rows.size();
+		} catch (Throwable t) {
+			rowsFailed += rows.size();
+			logger.error("Write-behind insert of " + rows.size() + " rows failed", t);
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		flushCount++;
+		lastFlushMillis = millis;
+		totalFlushMillis += millis;
+		if (millis > maxFlushMillis) {
+			maxFlushMillis = millis;
+		}
+		synchronized (this) {
+			rowsDone += rows.size();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * The number of rows waiting on the queue. May be off by one while a flush()
+	 * is in progress.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getRowsWritten() {
+		return rowsWritten;
+	}
+
+	public long getRowsFailed() {
+		return rowsFailed;
+	}
+
+	/**
+	 * The number of times rows have been written to the database.
+	 */
+	public long getFlushCount() {
+		return flushCount;
+	}
+
+	public long getLastFlushMillis() {
+		return lastFlushMillis;
+	}
+
+	public long getMaxFlushMillis() {
+		return maxFlushMillis;
+	}
+
+	public long getTotalFlushMillis() {
+		return totalFlushMillis;
+	}
+
+}
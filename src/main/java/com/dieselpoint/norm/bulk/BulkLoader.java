@@ -0,0 +1,24 @@
+package com.dieselpoint.norm.bulk;
+
+import java.util.Iterator;
+
+import com.dieselpoint.norm.Query;
+
+/**
+ * Loads large numbers of rows into a table using the fastest path the
+ * database offers. Implementations must stream the rows, pulling them from the
+ * iterator as they go, rather than buffering the whole dataset. Call it using
+ * Database.bulkLoad(), or set a custom implementation with
+ * Database.setBulkLoader().
+ */
+public interface BulkLoader {
+
+	/**
+	 * Load the rows. The query supplies the table name override, the
+	 * transaction, and the batch size, if any were set.
+	 * 
+	 * @return the number of rows loaded
+	 */
+	public long load(Query query, Class<?> rowClass, Iterator<?> rows);
+
+}
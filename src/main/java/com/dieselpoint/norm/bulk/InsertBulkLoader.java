@@ -0,0 +1,41 @@
+package com.dieselpoint.norm.bulk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.dieselpoint.norm.Query;
+
+/**
+ * Loads rows using multi-row insert statements. Works on any database that
+ * accepts "insert into t (...) values (...),(...)", and is the fallback when
+ * there is no native bulk path. Only one chunk of rows is held in memory at a
+ * time. Generated keys are not read back.
+ */
+public class InsertBulkLoader implements BulkLoader {
+
+	@Override
+	public long load(Query query, Class<?> rowClass, Iterator<?> rows) {
+
+		int chunkSize = query.getBatchSize() > 0 ? query.getBatchSize() : 1000;
+		List<Object> chunk = new ArrayList<>(chunkSize);
+		long count = 0;
+
+		while (rows.hasNext()) {
+			chunk.add(rows.next());
+			if (chunk.size() == chunkSize || !rows.hasNext()) {
+				Query insert = new Query(query.getDatabase())
+						.table(query.getTable())
+						.transaction(query.getTransaction())
+						.batchSize(chunkSize)
+						.multiRowInsert(true)
+						.fetchGeneratedKeys(false)
+						.insertAll(chunk);
+				count += insert.getRowsAffected();
+				chunk.clear();
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.dieselpoint.norm.bulk;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.Transaction;
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.latency.LatencyTimer;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+/**
+ * Loads rows using the Postgres "COPY ... FROM STDIN" command. Rows are
+ * encoded as CSV and written to the server in blocks of about 64KB as they are
+ * pulled from the iterator, so the dataset is never held in memory. The COPY is
+ * a single statement, so either all the rows load or none do.
+ * <p>
+ * Requires the Postgres JDBC driver on the classpath. Columns are the same
+ * ones an insert would use, so @GeneratedValue columns are left to the
+ * database, and generated keys are not read back.
+ * </p>
+ */
+public class PostgresCopyBulkLoader implements BulkLoader {
+
+	private static final int FLUSH_SIZE = 64 * 1024;
+
+	@Override
+	public long load(Query query, Class<?> rowClass, Iterator<?> rows) {
+
+		Database db = query.getDatabase();
+		StandardSqlMaker sqlMaker = (StandardSqlMaker) db.getSqlMaker();
+		StandardPojoInfo pojoInfo = sqlMaker.getPojoInfo(rowClass);
+		String table = Objects.requireNonNullElse(query.getTable(), pojoInfo.table);
+		String sql = "copy " + table + " (" + Util.join(pojoInfo.insertColumnNames)
+				+ ") from stdin with (format csv)";
+
+		Transaction transaction = query.getTransaction();
+		Connection con = null;
+		CopyIn copy = null;
+		try {
+			con = transaction == null ? db.getConnection() : transaction.getConnection();
+
+			LatencyTimer timer = new LatencyTimer(query);
+			copy = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+
+			StringBuilder buf = new StringBuilder(FLUSH_SIZE + 1024);
+			while (rows.hasNext()) {
+				Object[] args = sqlMaker.getInsertArgs(query, rows.next());
+				appendRow(buf, args);
+				if (buf.length() >= FLUSH_SIZE) {
+					write(copy, buf);
+				}
+			}
+			write(copy, buf);
+			long count = copy.endCopy();
+			copy = null;
+
+			timer.stop(sql, null);
+			return count;
+
+		} catch (SQLException | RuntimeException e) {
+			DbException dbe = e instanceof DbException ? (DbException) e : new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+
+		} finally {
+			if (copy != null && copy.isActive()) {
+				try {
+					copy.cancelCopy();
+				} catch (SQLException e) {
+					// the original exception is the one that matters
+				}
+			}
+			if (transaction == null && con != null) {
+				try {
+					con.close();
+				} catch (SQLException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static void write(CopyIn copy, StringBuilder buf) throws SQLException {
+		if (buf.length() == 0) {
+			return;
+		}
+		byte[] bytes = buf.toString().getBytes(StandardCharsets.UTF_8);
+		copy.writeToCopy(bytes, 0, bytes.length);
+		buf.setLength(0);
+	}
+
+	/**
+	 * Append one row of CSV, terminated by a newline. Nulls are written as empty
+	 * unquoted fields, which COPY reads as NULL; all other values are quoted, so
+	 * an empty string stays an empty string.
+	 */
+	static void appendRow(StringBuilder buf, Object[] args) {
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			Object value = args[i];
+			if (value != null) {
+				appendQuoted(buf, toText(value));
+			}
+		}
+		buf.append('\n');
+	}
+
+	private static void appendQuoted(StringBuilder buf, String str) {
+		buf.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch == '"') {
+				buf.append('"');
+			}
+			buf.append(ch);
+		}
+		buf.append('"');
+	}
+
+	/**
+	 * Convert a value to the text form Postgres expects for its column type.
+	 */
+	static String toText(Object value) {
+		if (value instanceof byte[]) {
+			return toHex((byte[]) value);
+		}
+		if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+				&& !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+			return new Timestamp(((java.util.Date) value).getTime()).toString();
+		}
+		if (value instanceof Object[]) {
+			return toArrayText(Arrays.asList((Object[]) value));
+		}
+		if (value instanceof Collection) {
+			return toArrayText((Collection<?>) value);
+		}
+		return value.toString();
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] digits = "0123456789abcdef".toCharArray();
+		StringBuilder buf = new StringBuilder(2 + bytes.length * 2);
+		buf.append("\\x");
+		for (byte b : bytes) {
+			buf.append(digits[(b >> 4) & 0xf]);
+			buf.append(digits[b & 0xf]);
+		}
+		return buf.toString();
+	}
+
+	private static String toArrayText(Collection<?> values) {
+		StringBuilder buf = new StringBuilder();
+		buf.append('{');
+		boolean first = true;
+		for (Object value : values) {
+			if (!first) {
+				buf.append(',');
+			}
+			first = false;
+			if (value == null) {
+				buf.append("NULL");
+				continue;
+			}
+			String str = toText(value);
+			buf.append('"');
+			for (int i = 0; i < str.length(); i++) {
+				char ch = str.charAt(i);
+				if (ch == '"' || ch == '\\') {
+					buf.append('\\');
+				}
+				buf.append(ch);
+			}
+			buf.append('"');
+		}
+		buf.append('}');
+		return buf.toString();
+	}
+
+}
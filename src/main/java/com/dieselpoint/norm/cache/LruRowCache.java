@@ -0,0 +1,129 @@
+package com.dieselpoint.norm.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A RowCache that holds up to maxSize rows, dropping the least recently used
+ * when it is full. If ttlMillis is greater than zero, rows also expire that
+ * long after they were cached.
+ */
+public class LruRowCache implements RowCache {
+
+	private final long ttlMillis;
+	private final LinkedHashMap<Key, CachedRow> map;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public LruRowCache(int maxSize) {
+		this(maxSize, 0);
+	}
+
+	public LruRowCache(int maxSize, long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		this.map = new LinkedHashMap<Key, CachedRow>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedRow> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	@Override
+	public Object[] get(Class<?> rowClass, List<Object> key) {
+		Key k = new Key(rowClass, key);
+		CachedRow entry;
+		synchronized (map) {
+			entry = map.get(k);
+			if (entry != null && entry.expires != 0 && entry.expires < System.currentTimeMillis()) {
+				map.remove(k);
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.values;
+	}
+
+	@Override
+	public void put(Class<?> rowClass, List<Object> key, Object[] values) {
+		long expires = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+		synchronized (map) {
+			map.put(new Key(rowClass, key), new CachedRow(values, expires));
+		}
+	}
+
+	@Override
+	public void invalidate(Class<?> rowClass, List<Object> key) {
+		synchronized (map) {
+			map.remove(new Key(rowClass, key));
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (map) {
+			return map.size();
+		}
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static class CachedRow {
+		final Object[] values;
+		final long expires;
+
+		CachedRow(Object[] values, long expires) {
+			this.values = values;
+			this.expires = expires;
+		}
+	}
+
+	private static class Key {
+		private final Class<?> rowClass;
+		private final List<Object> key;
+
+		Key(Class<?> rowClass, List<Object> key) {
+			this.rowClass = rowClass;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * rowClass.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return rowClass == other.rowClass && Objects.equals(key, other.key);
+		}
+	}
+
+}
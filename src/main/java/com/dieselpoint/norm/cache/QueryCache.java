@@ -0,0 +1,226 @@
+package com.dieselpoint.norm.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the results of queries marked with Query.cached(), keyed by sql, row
+ * class, and args. Each entry belongs to a table, and all of a table's entries
+ * are dropped when the Database writes to it. The cache is bounded by the total
+ * number of rows it holds; when that is exceeded, expired entries and then an
+ * arbitrary batch of others are dropped.
+ * <p>
+ * If several threads miss on the same key at once, only one of them runs the
+ * query, and the others wait for its result.
+ * </p>
+ */
+public class QueryCache {
+
+	private final ConcurrentHashMap<Key, Entry> map = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Key, CompletableFuture<List<?>>> loading = new ConcurrentHashMap<>();
+	private final AtomicInteger rowCount = new AtomicInteger();
+	private final AtomicLong invalidations = new AtomicLong();
+	private volatile int maxRows;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public QueryCache(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * Return the cached rows, or load them, cache them for ttlMillis, and return
+	 * them. The returned list is unmodifiable, and the rows in it are shared with
+	 * other callers.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> get(String table, String sql, Class<T> rowClass, Object[] args, long ttlMillis,
+			Supplier<List<T>> loader) {
+		Key key = new Key(table, sql, rowClass, args);
+
+		Entry entry = map.get(key);
+		if (entry != null) {
+			if (entry.expires >= System.currentTimeMillis()) {
+				hits.incrementAndGet();
+				return (List<T>) entry.rows;
+			}
+			remove(key, entry);
+		}
+		misses.incrementAndGet();
+
+		CompletableFuture<List<?>> future = new CompletableFuture<>();
+		CompletableFuture<List<?>> existing = loading.putIfAbsent(key, future);
+		if (existing != null) {
+			try {
+				return (List<T>) existing.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+
+		try {
+			long generation = invalidations.get();
+			List<T> rows = Collections.unmodifiableList(loader.get());
+			// don't cache it if the table may have changed while it was loading
+			if (generation == invalidations.get() && rows.size() <= maxRows) {
+				put(key, new Entry(rows, System.currentTimeMillis() + ttlMillis));
+			}
+			future.complete(rows);
+			return rows;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+
+	private void put(Key key, Entry entry) {
+		Entry old = map.put(key, entry);
+		int count = rowCount.addAndGet(entry.weight() - (old == null ? 0 : old.weight()));
+		if (count > maxRows) {
+			evict();
+		}
+	}
+
+	private void remove(Key key, Entry entry) {
+		if (map.remove(key, entry)) {
+			rowCount.addAndGet(-entry.weight());
+		}
+	}
+
+	private void evict() {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<Key, Entry> e : map.entrySet()) {
+			if (e.getValue().expires < now) {
+				remove(e.getKey(), e.getValue());
+			}
+		}
+		// drop entries until there's a tenth of the room free
+		int target = maxRows - maxRows / 10;
+		Iterator<Map.Entry<Key, Entry>> it = map.entrySet().iterator();
+		while (rowCount.get() > target && it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			remove(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Drop the entries for a table. Table names are not case sensitive. A null
+	 * table drops everything.
+	 */
+	public void invalidate(String table) {
+		invalidations.incrementAndGet();
+		if (map.isEmpty()) {
+			return;
+		}
+		if (table == null) {
+			clear();
+			return;
+		}
+		String name = table.toLowerCase(Locale.ROOT);
+		for (Map.Entry<Key, Entry> e : map.entrySet()) {
+			if (e.getKey().table.equals(name)) {
+				remove(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	public void clear() {
+		invalidations.incrementAndGet();
+		for (Map.Entry<Key, Entry> e : map.entrySet()) {
+			remove(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Set the maximum number of rows, across all entries, to hold.
+	 */
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+		if (rowCount.get() > maxRows) {
+			evict();
+		}
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public int getRowCount() {
+		return rowCount.get();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static class Entry {
+		final List<?> rows;
+		final long expires;
+
+		Entry(List<?> rows, long expires) {
+			this.rows = rows;
+			this.expires = expires;
+		}
+
+		int weight() {
+			// count the entry itself, so empty results aren't free
+			return rows.size() + 1;
+		}
+	}
+
+	private static class Key {
+		final String table;
+		final String sql;
+		final Class<?> rowClass;
+		final Object[] args;
+		final int hashCode;
+
+		Key(String table, String sql, Class<?> rowClass, Object[] args) {
+			this.table = table.toLowerCase(Locale.ROOT);
+			this.sql = sql;
+			this.rowClass = rowClass;
+			this.args = args == null ? new Object[0] : args.clone();
+			int h = sql.hashCode();
+			h = 31 * h + rowClass.hashCode();
+			h = 31 * h + Arrays.deepHashCode(this.args);
+			this.hashCode = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return rowClass == other.rowClass && sql.equals(other.sql) && table.equals(other.table)
+					&& Arrays.deepEquals(args, other.args);
+		}
+	}
+
+}
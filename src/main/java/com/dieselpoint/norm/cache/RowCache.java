@@ -0,0 +1,43 @@
+package com.dieselpoint.norm.cache;
+
+import java.util.List;
+
+/**
+ * A cache of rows by primary key, used by Database.findById(). Rows are stored
+ * as their column values, in the order of the pojo's properties, rather than as
+ * pojos, so that each caller gets its own copy. Dates and byte arrays are
+ * copied going in and coming out; other mutable values are shared. Norm
+ * invalidates a row when it updates, upserts, or deletes it.
+ * <p>
+ * Implementations must be thread-safe. See {@link LruRowCache}; you can also
+ * plug in an adapter for a library like Caffeine.
+ * </p>
+ */
+public interface RowCache {
+
+	/**
+	 * Returns the column values for the row, or null if it isn't cached.
+	 */
+	public Object[] get(Class<?> rowClass, List<Object> key);
+
+	public void put(Class<?> rowClass, List<Object> key, Object[] values);
+
+	public void invalidate(Class<?> rowClass, List<Object> key);
+
+	public void clear();
+
+	public long getHits();
+
+	public long getMisses();
+
+	/**
+	 * The fraction of lookups that were found in the cache, or 0 if there have
+	 * been none.
+	 */
+	public default double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+}
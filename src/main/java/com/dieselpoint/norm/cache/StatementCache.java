@@ -0,0 +1,224 @@
+package com.dieselpoint.norm.cache;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cached statements for one physical connection. Only one thread uses a
+ * connection at a time, but the methods are synchronized anyway because
+ * closeAll() may be called from another thread.
+ */
+class StatementCache {
+
+	private final StatementCachingDataSource owner;
+	private final Connection physical;
+	private final LinkedHashMap<Key, CachedStatement> statements;
+
+	StatementCache(StatementCachingDataSource owner, Connection physical, int maxSize) {
+		this.owner = owner;
+		this.physical = physical;
+		this.statements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+				if (size() > maxSize) {
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * If the method is one of the prepareStatement() variants we cache, return a
+	 * statement for it. Otherwise return null.
+	 */
+	synchronized PreparedStatement prepare(Connection pooled, Method method, Object[] args) throws Throwable {
+		if (!method.getName().equals("prepareStatement") || args.length > 2) {
+			return null;
+		}
+		Object mode = args.length == 2 ? args[1] : null;
+		if (mode instanceof String[]) {
+			mode = Arrays.asList((String[]) mode);
+		} else if (mode instanceof int[]) {
+			mode = Arrays.toString((int[]) mode);
+		}
+		Key key = new Key((String) args[0], mode);
+
+		CachedStatement cached = statements.get(key);
+		if (cached != null && cached.delegate.isClosed()) {
+			statements.remove(key);
+			cached = null;
+		}
+		if (cached != null) {
+			if (cached.inUse) {
+				// can't share it, so hand out an ordinary statement
+				owner.misses.incrementAndGet();
+				return (PreparedStatement) StatementCachingDataSource.invoke(pooled, method, args);
+			}
+			owner.hits.incrementAndGet();
+			cached.inUse = true;
+			return cached.proxy;
+		}
+
+		owner.misses.incrementAndGet();
+		PreparedStatement state = (PreparedStatement) StatementCachingDataSource.invoke(physical, method, args);
+		cached = new CachedStatement(this, state);
+		cached.inUse = true;
+		statements.put(key, cached);
+		return cached.proxy;
+	}
+
+	synchronized int size() {
+		return statements.size();
+	}
+
+	synchronized void remove(CachedStatement cached) {
+		statements.values().remove(cached);
+	}
+
+	void closeAll() {
+		List<CachedStatement> all;
+		synchronized (this) {
+			all = new ArrayList<>(statements.values());
+			statements.clear();
+		}
+		for (CachedStatement cached : all) {
+			cached.evict();
+		}
+	}
+
+	private static class Key {
+		private final String sql;
+		private final Object mode;
+
+		Key(String sql, Object mode) {
+			this.sql = sql;
+			this.mode = mode;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * sql.hashCode() + (mode == null ? 0 : mode.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return sql.equals(other.sql) && (mode == null ? other.mode == null : mode.equals(other.mode));
+		}
+	}
+
+	/**
+	 * A statement that is reset rather than closed when the caller closes it.
+	 */
+	static class CachedStatement {
+
+		private final StatementCache cache;
+		final PreparedStatement delegate;
+		final PreparedStatement proxy;
+		private final int defaultFetchSize;
+
+		// guarded by cache
+		boolean inUse;
+		private boolean evicted;
+
+		private ResultSet openResultSet;
+
+		CachedStatement(StatementCache cache, PreparedStatement delegate) throws SQLException {
+			this.cache = cache;
+			this.delegate = delegate;
+			this.defaultFetchSize = delegate.getFetchSize();
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, (p, method, args) -> {
+						switch (method.getName()) {
+						case "close":
+							release();
+							return null;
+						case "isClosed":
+							return !inUse || delegate.isClosed();
+						default:
+							Object result = StatementCachingDataSource.invoke(delegate, method, args);
+							if (result instanceof ResultSet) {
+								openResultSet = (ResultSet) result;
+							}
+							return result;
+						}
+					});
+		}
+
+		/**
+		 * Reset the statement for the next user, or close it if it was evicted
+		 * while in use.
+		 */
+		private void release() {
+			synchronized (cache) {
+				if (!inUse) {
+					return;
+				}
+				inUse = false;
+				try {
+					if (openResultSet != null) {
+						openResultSet.close();
+						openResultSet = null;
+					}
+					delegate.clearParameters();
+					clearBatch();
+					if (delegate.getFetchSize() != defaultFetchSize) {
+						delegate.setFetchSize(defaultFetchSize);
+					}
+				} catch (SQLException e) {
+					// something is wrong with it; don't reuse it
+					evicted = true;
+					cache.remove(this);
+				}
+				if (evicted) {
+					closeQuietly();
+				}
+			}
+		}
+
+		private void clearBatch() {
+			try {
+				delegate.clearBatch();
+			} catch (SQLException e) {
+				// not all drivers support batches
+			}
+		}
+
+		/**
+		 * Called when the statement drops out of the cache.
+		 */
+		void evict() {
+			synchronized (cache) {
+				evicted = true;
+				if (!inUse) {
+					closeQuietly();
+				}
+			}
+		}
+
+		private void closeQuietly() {
+			try {
+				delegate.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.dieselpoint.norm.cache;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps a pooled DataSource and keeps PreparedStatements open across uses.
+ * Statements are cached per physical connection, keyed by sql and
+ * generated-keys mode, with least-recently-used eviction. When a caller closes
+ * a cached statement, it is reset and returned to the cache rather than closed.
+ * Turn it on with Database.setStatementCacheSize().
+ * <p>
+ * This is useful for drivers that don't cache statements themselves, like
+ * SQLite and Derby. Statements are prepared on the physical connection, found
+ * with Connection.unwrap(), so that the pool doesn't close them when the
+ * connection is returned. If the pool's connections can't be unwrapped,
+ * statements are not cached.
+ * </p>
+ * <p>
+ * If a statement for the same sql is already in use on the connection, for
+ * example by an open ResultIterator, an uncached statement is prepared
+ * instead.
+ * </p>
+ * <p>
+ * Because cached statements bypass the pool's connection proxy, the pool
+ * doesn't track them: it won't close them when the connection is returned, and
+ * they don't count toward its leak detection or dirty-state tracking. The cache
+ * for a physical connection is dropped when the pool closes that connection,
+ * for example when it reaches its maximum lifetime.
+ * </p>
+ */
+public class StatementCachingDataSource implements DataSource, AutoCloseable {
+
+	private final DataSource delegate;
+	private final int cacheSize;
+
+	// keyed by physical connection. Not a WeakHashMap, because each cache's
+	// statements refer to its connection; closed ones are removed by sweep()
+	private final Map<Connection, StatementCache> caches = new HashMap<>();
+
+	final AtomicLong hits = new AtomicLong();
+	final AtomicLong misses = new AtomicLong();
+
+	public StatementCachingDataSource(DataSource delegate, int cacheSize) {
+		this.delegate = delegate;
+		this.cacheSize = cacheSize;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(delegate.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(delegate.getConnection(username, password));
+	}
+
+	private Connection wrap(Connection pooled) throws SQLException {
+		Connection physical;
+		try {
+			physical = pooled.unwrap(Connection.class);
+		} catch (SQLException e) {
+			return pooled;
+		}
+		if (physical == null || physical == pooled) {
+			// nothing outlives close() on this connection, so it can't be cached
+			return pooled;
+		}
+
+		StatementCache cache;
+		synchronized (caches) {
+			cache = caches.get(physical);
+			if (cache == null) {
+				// a new physical connection often replaces one the pool retired
+				sweep();
+				cache = new StatementCache(this, physical, cacheSize);
+				caches.put(physical, cache);
+			}
+		}
+
+		StatementCache theCache = cache;
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+					PreparedStatement state = theCache.prepare(pooled, method, args);
+					if (state != null) {
+						return state;
+					}
+					return invoke(pooled, method, args);
+				});
+	}
+
+	/**
+	 * Drop the caches of physical connections that have been closed.
+	 */
+	private void sweep() {
+		for (Iterator<Map.Entry<Connection, StatementCache>> it = caches.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Connection, StatementCache> entry = it.next();
+			boolean closed;
+			try {
+				closed = entry.getKey().isClosed();
+			} catch (SQLException e) {
+				closed = true;
+			}
+			if (closed) {
+				it.remove();
+				entry.getValue().closeAll();
+			}
+		}
+	}
+
+	static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The number of times a statement was found in the cache.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * The number of times a statement had to be prepared.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of statements currently cached, across all connections.
+	 */
+	public int getCachedStatementCount() {
+		int count = 0;
+		synchronized (caches) {
+			for (StatementCache cache : caches.values()) {
+				count += cache.size();
+			}
+		}
+		return count;
+	}
+
+	public DataSource getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Close the cached statements and, if it can be closed, the wrapped
+	 * DataSource.
+	 */
+	@Override
+	public void close() throws SQLException {
+		List<StatementCache> all;
+		synchronized (caches) {
+			all = new ArrayList<>(caches.values());
+			caches.clear();
+		}
+		for (StatementCache cache : all) {
+			cache.closeAll();
+		}
+		if (delegate instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) delegate).close();
+			} catch (SQLException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new SQLException(e);
+			}
+		}
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return delegate.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		delegate.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		delegate.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return delegate.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return delegate.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return delegate.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || delegate.isWrapperFor(iface);
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.dieselpoint.norm.latency;
 
+import com.dieselpoint.norm.Database;
 import com.dieselpoint.norm.Transaction;
 
 import java.util.Arrays;
@@ -15,17 +16,38 @@ public class DbLatencyWarning {
     public final long actualLatency;
     public final String cause;
     public final String offendingStatement;
+    /** the sql and args that were too slow, or null for a transaction commit */
+    public final String sql;
+    public final Object[] args;
+    private volatile String plan;
 
     protected DbLatencyWarning( long maxAcceptableLatency, long actualLatency, String cause ) {
+        this( maxAcceptableLatency, actualLatency, cause, null, null );
+    }
+
+    private DbLatencyWarning( long maxAcceptableLatency, long actualLatency, String cause, String sql, Object[] args ) {
         this.maxAcceptableLatency = maxAcceptableLatency;
         this.actualLatency = actualLatency;
         this.cause = cause;
+        this.sql = sql;
+        this.args = args;
         this.offendingStatement = getOffendingStatement();
     }
 
     public DbLatencyWarning(long maxAcceptableLatency, long actualLatency, String theNaughtySql, Object[] theNaughtyArgs ) {
         this( maxAcceptableLatency, actualLatency,
-                        "SQL:" + theNaughtySql + ", SQL_Args:" + Arrays.deepToString(theNaughtyArgs) );
+                        "SQL:" + theNaughtySql + ", SQL_Args:" + Arrays.deepToString(theNaughtyArgs),
+                        theNaughtySql, theNaughtyArgs );
+    }
+
+    /**
+     * @return the EXPLAIN output for the sql, captured just after it ran, or null if
+     * {@link Database#setExplainCapture(boolean)} is off or the plan wasn't captured
+     */
+    public String getPlan() { return plan; }
+
+    public void setPlan( String plan ) {
+        this.plan = plan;
     }
 
     public DbLatencyWarning(long maxAcceptableLatency, long actualLatency, Transaction theNaughtyTransaction ) {
@@ -49,8 +71,9 @@ public class DbLatencyWarning {
     }
 
     public String toString() {
+        String planText = plan == null ? "" : ", Plan:\n" + plan;
         if (maxAcceptableLatency == 0)
-            return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ". " + cause;
-        return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ", versus max acceptable: " + maxAcceptableLatency + "ms. Caused by " + cause;
+            return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ". " + cause + planText;
+        return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ", versus max acceptable: " + maxAcceptableLatency + "ms. Caused by " + cause + planText;
     }
 }
@@ -0,0 +1,166 @@
+package com.dieselpoint.norm.latency;
+
+import com.dieselpoint.norm.Database;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Re-runs slow sql with EXPLAIN and attaches the plan to the {@link DbLatencyWarning} before the
+ * {@link LatencyAlerter}s see it. The EXPLAIN runs on its own thread and its own connection, so the caller isn't held
+ * up, and the sql comes from {@link com.dieselpoint.norm.sqlmakers.SqlMaker#getExplainSql(String)}, so it suits the
+ * database. Turn it on with {@link Database#setExplainCapture(boolean)}.
+ * <p>At most one plan is captured per interval, and only a few may be waiting at once. Warnings that don't get a plan
+ * go to the alerters straight away, on the caller's thread, as they always have.
+ */
+public class ExplainCapture implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger( ExplainCapture.class );
+
+    private static final int MAX_PENDING = 4;
+
+    private final Database db;
+    private final ExecutorService executor;
+    private final AtomicLong nextAllowed = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long minIntervalMillis = 1000;
+
+    public ExplainCapture( Database db ) {
+        this.db = db;
+        this.executor = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread( r, "norm-explain" );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+
+    /**
+     * Sets the minimum time between captured plans. The default is 1000ms.
+     */
+    public void setMinIntervalMillis( long minIntervalMillis ) {
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    public long getMinIntervalMillis() { return minIntervalMillis; }
+
+    /**
+     * Captures the plan for the warning's sql in the background, then passes the warning to alert. Returns false, and
+     * does nothing, if the sql can't be explained or the rate limit has been reached.
+     */
+    public boolean capture( DbLatencyWarning warning, Consumer<DbLatencyWarning> alert ) {
+        if (!isExplainable( warning.sql, warning.args ))
+            return false;
+
+        long now = System.currentTimeMillis();
+        long next = nextAllowed.get();
+        if (now < next || !nextAllowed.compareAndSet( next, now + minIntervalMillis ))
+            return false;
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            return false;
+        }
+
+        try {
+            executor.execute( () -> {
+                try {
+                    warning.setPlan( explain( warning.sql, warning.args ) );
+                } catch (Throwable t) {
+                    logger.info( "Could not capture plan for: " + warning.sql, t );
+                } finally {
+                    pending.decrementAndGet();
+                }
+                try {
+                    alert.accept( warning );
+                } catch (Throwable t) {
+                    logger.warn( "Latency alerter failed", t );
+                }
+            } );
+        } catch (RuntimeException e) {
+            // shut down
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true for a select, insert, update or delete whose parameters have values. Other statements, like COPY,
+     * and sql with placeholders but no args would only make EXPLAIN fail.
+     */
+    static boolean isExplainable( String sql, Object[] args ) {
+        if (sql == null || (args == null && sql.indexOf( '?' ) >= 0))
+            return false;
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter( trimmed.charAt( end ) ))
+            end++;
+        switch (trimmed.substring( 0, end ).toLowerCase( Locale.ROOT )) {
+            case "select":
+            case "with":
+            case "insert":
+            case "update":
+            case "delete":
+            case "merge":
+            case "replace":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs EXPLAIN for the sql on a new connection and returns the plan as text. A single-column plan, like the JSON
+     * from Postgres, is returned as is, one line per row. A tabular plan, like the one from MySQL, gets a header line
+     * and tab-separated columns.
+     */
+    public String explain( String sql, Object[] args ) throws SQLException {
+        String explainSql = db.getSqlMaker().getExplainSql( sql );
+        try (Connection con = db.getConnection();
+             PreparedStatement state = con.prepareStatement( explainSql )) {
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    Object arg = args[i];
+                    if (arg instanceof List)
+                        arg = ((List<?>) arg).toArray();
+                    state.setObject( i + 1, arg );
+                }
+            }
+            try (ResultSet rs = state.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int cols = meta.getColumnCount();
+                StringBuilder buf = new StringBuilder();
+                if (cols > 1) {
+                    for (int i = 1; i <= cols; i++) {
+                        buf.append( i > 1 ? "\t" : "" ).append( meta.getColumnLabel( i ) );
+                    }
+                }
+                while (rs.next()) {
+                    if (buf.length() > 0)
+                        buf.append( '\n' );
+                    for (int i = 1; i <= cols; i++) {
+                        buf.append( i > 1 ? "\t" : "" ).append( rs.getString( i ) );
+                    }
+                }
+                return buf.toString();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,518 @@
+package com.dieselpoint.norm.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a StandardPojoInfo subclass for each class annotated with @Table,
+ * so that StandardSqlMaker doesn't have to use the Introspector and reflection
+ * to find the properties at runtime. The generated class is named
+ * &lt;Entity&gt;_NormPojoInfo, is in the same package as the entity, and reads
+ * and writes properties with direct field access and getter/setter calls.
+ * StandardSqlMaker.getPojoInfo() uses it automatically when it is on the
+ * classpath.
+ * <p>
+ * The processor is not registered as a service, so it does not run unless you
+ * ask for it, for example with javac -processor
+ * com.dieselpoint.norm.processor.PojoInfoProcessor, or in Maven with
+ * &lt;annotationProcessors&gt; in the compiler plugin configuration.
+ * </p>
+ * <p>
+ * Properties are found the same way StandardPojoInfo finds them: public
+ * non-static, non-final fields, then bean properties with public getters,
+ * sorted by name. @Transient, @Id, @GeneratedValue, @Column, @Enumerated,
+ * @Convert, @DbSerializer, and @ColumnOrder are honored. The sql is still
+ * generated by the SqlMaker at runtime, because it depends on the dialect.
+ * </p>
+ */
+@SupportedAnnotationTypes("jakarta.persistence.Table")
+public class PojoInfoProcessor extends AbstractProcessor {
+
+	static final String SUFFIX = "_NormPojoInfo";
+
+	private static final Set<String> NUMBER_TYPES = Set.of("java.lang.Long", "java.lang.Integer", "java.lang.Short",
+			"java.lang.Byte", "java.lang.Double", "java.lang.Float");
+
+	private static final String TRANSIENT = "jakarta.persistence.Transient";
+	private static final String ID = "jakarta.persistence.Id";
+	private static final String GENERATED_VALUE = "jakarta.persistence.GeneratedValue";
+	private static final String COLUMN = "jakarta.persistence.Column";
+	private static final String ENUMERATED = "jakarta.persistence.Enumerated";
+	private static final String CONVERT = "jakarta.persistence.Convert";
+	private static final String TABLE = "jakarta.persistence.Table";
+	private static final String DB_SERIALIZER = "com.dieselpoint.norm.serialize.DbSerializer";
+	private static final String COLUMN_ORDER = "com.dieselpoint.norm.ColumnOrder";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS) {
+					continue;
+				}
+				TypeElement type = (TypeElement) element;
+				if (!isAccessible(type)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+							"Skipping " + type + ": it must be a non-private top-level or static nested class", type);
+					continue;
+				}
+				try {
+					generate(type);
+				} catch (IOException e) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+							"Could not write pojo info for " + type + ": " + e, type);
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isAccessible(TypeElement type) {
+		Element e = type;
+		while (e.getKind() == ElementKind.CLASS) {
+			if (e.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			TypeElement t = (TypeElement) e;
+			if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+			if (t.getNestingKind() != NestingKind.TOP_LEVEL && t.getNestingKind() != NestingKind.MEMBER) {
+				return false;
+			}
+			e = e.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * A property as the generated code will set it up.
+	 */
+	private static class Prop {
+		String name;
+		Element element; // the field or the getter
+		TypeMirror type;
+		String getterExpr;
+		String setterExpr;
+		boolean isPrimaryKey;
+		boolean isGenerated;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+
+		String entity = type.getQualifiedName().toString();
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+				.replace('$', '_') + SUFFIX;
+
+		List<Prop> props = new ArrayList<>();
+		List<String> primaryKeyNames = new ArrayList<>();
+		List<String> generatedNames = new ArrayList<>();
+
+		for (VariableElement field : publicFields(type)) {
+			Prop prop = new Prop();
+			prop.name = field.getSimpleName().toString();
+			prop.element = field;
+			prop.type = field.asType();
+			prop.getterExpr = "((" + entity + ") pojo)." + prop.name;
+			prop.setterExpr = "((" + entity + ") pojo)." + prop.name + " = " + converted(prop.type);
+			props.add(prop);
+		}
+
+		for (Map.Entry<String, ExecutableElement[]> entry : beanProperties(type).entrySet()) {
+			ExecutableElement read = entry.getValue()[0];
+			ExecutableElement write = entry.getValue()[1];
+			Prop prop = new Prop();
+			prop.name = entry.getKey();
+			prop.element = read;
+			prop.type = read.getReturnType();
+			prop.getterExpr = "((" + entity + ") pojo)." + read.getSimpleName() + "()";
+			if (write != null) {
+				prop.setterExpr = "((" + entity + ") pojo)." + write.getSimpleName() + "(" + converted(prop.type)
+						+ ")";
+			}
+			props.add(prop);
+		}
+
+		StringBuilder body = new StringBuilder();
+		int count = 0;
+		Map<String, String> varNames = new LinkedHashMap<>();
+		for (Prop prop : props) {
+			String var = "p" + count++;
+
+			body.append("\t\tProperty ").append(var).append(" = new Property();\n");
+
+			AnnotationMirror column = find(prop.element, COLUMN);
+			if (column != null) {
+				String colName = ((String) value(column, "name")).trim();
+				if (!colName.isEmpty()) {
+					prop.name = colName;
+				}
+			}
+
+			body.append("\t\t").append(var).append(".name = ").append(literal(prop.name)).append(";\n");
+			body.append("\t\t").append(var).append(".dataType = ").append(classLiteral(prop.type)).append(";\n");
+			body.append("\t\t").append(var).append(".getter = pojo -> ").append(prop.getterExpr).append(";\n");
+			if (prop.setterExpr != null) {
+				body.append("\t\t").append(var).append(".setter = (pojo, value) -> ").append(prop.setterExpr)
+						.append(";\n");
+			}
+
+			if (column != null) {
+				String impl = columnImpl(column, prop.element);
+				if (impl != null) {
+					body.append("\t\t").append(var).append(".columnAnnotation = ").append(impl).append(";\n");
+				}
+			}
+
+			if (find(prop.element, ID) != null) {
+				prop.isPrimaryKey = true;
+				body.append("\t\t").append(var).append(".isPrimaryKey = true;\n");
+				primaryKeyNames.add(prop.name);
+			}
+
+			if (find(prop.element, GENERATED_VALUE) != null) {
+				prop.isGenerated = true;
+				body.append("\t\t").append(var).append(".isGenerated = true;\n");
+			}
+
+			if (isEnum(prop.type)) {
+				String enumType = "STRING";
+				AnnotationMirror enumerated = find(prop.element, ENUMERATED);
+				if (enumerated != null) {
+					enumType = value(enumerated, "value").toString();
+				}
+				body.append("\t\t").append(var).append(".isEnumField = true;\n");
+				body.append("\t\t").append(var).append(".enumClass = (Class) ").append(classLiteral(prop.type))
+						.append(";\n");
+				body.append("\t\t").append(var).append(".enumType = jakarta.persistence.EnumType.").append(enumType)
+						.append(";\n");
+			}
+
+			AnnotationMirror serializer = find(prop.element, DB_SERIALIZER);
+			if (serializer != null) {
+				body.append("\t\t").append(var).append(".serializer = new ")
+						.append(erasure((TypeMirror) value(serializer, "value"))).append("();\n");
+			}
+
+			AnnotationMirror convert = find(prop.element, CONVERT);
+			if (convert != null) {
+				TypeMirror converter = (TypeMirror) value(convert, "converter");
+				if (converter.getKind() != TypeKind.VOID) {
+					body.append("\t\t").append(var).append(".converter = new ").append(erasure(converter))
+							.append("();\n");
+				}
+			}
+
+			if (prop.isGenerated) {
+				generatedNames.add(prop.name);
+			}
+			if (varNames.containsValue(prop.name)) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Duplicate pojo property found: '"
+						+ prop.name + "'. There may be both a field and a getter/setter", prop.element);
+			}
+			varNames.put(var, prop.name);
+		}
+
+		// @ColumnOrder drops any properties that aren't listed
+		List<String> order = new ArrayList<>(varNames.keySet());
+		AnnotationMirror columnOrder = find(type, COLUMN_ORDER);
+		if (columnOrder != null) {
+			order.clear();
+			for (Object v : (List<?>) value(columnOrder, "value")) {
+				String col = (String) ((AnnotationValue) v).getValue();
+				for (Map.Entry<String, String> entry : varNames.entrySet()) {
+					if (entry.getValue().equals(col)) {
+						order.add(entry.getKey());
+						break;
+					}
+				}
+			}
+		}
+
+		StringBuilder out = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			out.append("package ").append(packageName).append(";\n\n");
+		}
+		out.append("import com.dieselpoint.norm.sqlmakers.Property;\n");
+		out.append("import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;\n\n");
+		out.append("/**\n * Generated by PojoInfoProcessor for ").append(entity).append(". Do not edit.\n */\n");
+		out.append("@javax.annotation.processing.Generated(\"").append(PojoInfoProcessor.class.getName())
+				.append("\")\n");
+		out.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+		out.append("public final class ").append(simpleName).append(" extends StandardPojoInfo {\n\n");
+		out.append("\tpublic ").append(simpleName).append("() {\n");
+		out.append(body);
+		out.append("\n");
+		for (String var : order) {
+			out.append("\t\tpropertyMap.put(").append(var).append(".name, ").append(var).append(");\n");
+		}
+		for (String name : primaryKeyNames) {
+			out.append("\t\tprimaryKeyNames.add(").append(literal(name)).append(");\n");
+		}
+		out.append("\t\tgeneratedColumnNames = new String[] {");
+		for (int i = 0; i < generatedNames.size(); i++) {
+			out.append(i == 0 ? " " : ", ").append(literal(generatedNames.get(i)));
+		}
+		out.append(generatedNames.isEmpty() ? "};\n" : " };\n");
+		out.append("\t\ttable = ").append(literal(tableName(type))).append(";\n");
+		out.append("\t}\n\n}\n");
+
+		String fileName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(fileName, type);
+		try (Writer writer = file.openWriter()) {
+			writer.write(out.toString());
+		}
+	}
+
+	private String tableName(TypeElement type) {
+		AnnotationMirror table = find(type, TABLE);
+		String name = (String) value(table, "name");
+		String schema = (String) value(table, "schema");
+		if (schema != null && !schema.isEmpty()) {
+			return schema + "." + name;
+		}
+		return name;
+	}
+
+	/**
+	 * The public instance fields, in the order Class.getFields() returns them:
+	 * the class's own, then those of its superclasses.
+	 */
+	private List<VariableElement> publicFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<>();
+		for (TypeElement t = type; t != null; t = superclass(t)) {
+			for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+				Set<Modifier> mods = field.getModifiers();
+				if (!mods.contains(Modifier.PUBLIC) || mods.contains(Modifier.STATIC)
+						|| mods.contains(Modifier.FINAL)) {
+					continue;
+				}
+				if (find(field, TRANSIENT) != null) {
+					continue;
+				}
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Bean properties with a public getter, sorted by name as the Introspector
+	 * does. The value is { getter, setter }; the setter may be null.
+	 */
+	private Map<String, ExecutableElement[]> beanProperties(TypeElement type) {
+		Map<String, ExecutableElement> getters = new TreeMap<>();
+		Map<String, List<ExecutableElement>> setters = new TreeMap<>();
+
+		for (TypeElement t = type; t != null; t = superclass(t)) {
+			for (ExecutableElement method : ElementFilter.methodsIn(t.getEnclosedElements())) {
+				Set<Modifier> mods = method.getModifiers();
+				if (!mods.contains(Modifier.PUBLIC) || mods.contains(Modifier.STATIC)) {
+					continue;
+				}
+				String name = method.getSimpleName().toString();
+				int params = method.getParameters().size();
+				TypeMirror ret = method.getReturnType();
+
+				if (params == 0 && name.startsWith("get") && name.length() > 3 && ret.getKind() != TypeKind.VOID) {
+					getters.putIfAbsent(decapitalize(name.substring(3)), method);
+				} else if (params == 0 && name.startsWith("is") && name.length() > 2
+						&& ret.getKind() == TypeKind.BOOLEAN) {
+					getters.putIfAbsent(decapitalize(name.substring(2)), method);
+				} else if (params == 1 && name.startsWith("set") && name.length() > 3
+						&& ret.getKind() == TypeKind.VOID) {
+					setters.computeIfAbsent(decapitalize(name.substring(3)), k -> new ArrayList<>()).add(method);
+				}
+			}
+		}
+
+		Map<String, ExecutableElement[]> out = new TreeMap<>();
+		for (Map.Entry<String, ExecutableElement> entry : getters.entrySet()) {
+			ExecutableElement getter = entry.getValue();
+			if (find(getter, TRANSIENT) != null) {
+				continue;
+			}
+			ExecutableElement setter = null;
+			List<ExecutableElement> candidates = setters.get(entry.getKey());
+			if (candidates != null) {
+				for (ExecutableElement candidate : candidates) {
+					if (processingEnv.getTypeUtils().isSameType(candidate.getParameters().get(0).asType(),
+							getter.getReturnType())) {
+						setter = candidate;
+						break;
+					}
+				}
+			}
+			out.put(entry.getKey(), new ExecutableElement[] { getter, setter });
+		}
+		return out;
+	}
+
+	private TypeElement superclass(TypeElement type) {
+		TypeMirror sup = type.getSuperclass();
+		if (sup.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		TypeElement el = (TypeElement) ((DeclaredType) sup).asElement();
+		if (el.getQualifiedName().contentEquals("java.lang.Object")) {
+			return null;
+		}
+		return el;
+	}
+
+	/**
+	 * Same as java.beans.Introspector.decapitalize().
+	 */
+	static String decapitalize(String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/**
+	 * Returns an anonymous implementation of @Column with the same values, so
+	 * that createTable() works without reading annotations at runtime. Returns
+	 * null if @Column has a member this can't express.
+	 */
+	private String columnImpl(AnnotationMirror column, Element element) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("new jakarta.persistence.Column() {\n");
+		buf.append("\t\t\tpublic Class<? extends java.lang.annotation.Annotation> annotationType() {\n");
+		buf.append("\t\t\t\treturn jakarta.persistence.Column.class;\n\t\t\t}\n");
+
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils()
+				.getElementValuesWithDefaults(column);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+			Object v = entry.getValue().getValue();
+			String lit;
+			if (v instanceof String) {
+				lit = literal((String) v);
+			} else if (v instanceof Boolean || v instanceof Integer) {
+				lit = v.toString();
+			} else {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+						"@Column." + entry.getKey().getSimpleName() + " is not supported; @Column is ignored", element);
+				return null;
+			}
+			buf.append("\t\t\tpublic ").append(entry.getKey().getReturnType()).append(' ')
+					.append(entry.getKey().getSimpleName()).append("() {\n\t\t\t\treturn ").append(lit)
+					.append(";\n\t\t\t}\n");
+		}
+		buf.append("\t\t}");
+		return buf.toString();
+	}
+
+	private boolean isEnum(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		return ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+	}
+
+	private AnnotationMirror find(Element element, String annotationName) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement annot = (TypeElement) mirror.getAnnotationType().asElement();
+			if (annot.getQualifiedName().contentEquals(annotationName)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	private Object value(AnnotationMirror mirror, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+				.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	private String boxed(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type)
+					.getQualifiedName().toString();
+		}
+		return erasure(type);
+	}
+
+	/**
+	 * The value as the setter should receive it. Numbers are widened to the
+	 * property's type, so that an Integer can be written to a long, as
+	 * Field.set() allows, and lossy conversions fail the same way they do with
+	 * the reflective setters.
+	 */
+	private String converted(TypeMirror type) {
+		String box = boxed(type);
+		if (!NUMBER_TYPES.contains(box)) {
+			return "(" + box + ") value";
+		}
+		return "(" + box + ") StandardPojoInfo.widen(value, " + box + ".class)";
+	}
+
+	private String classLiteral(TypeMirror type) {
+		return erasure(type) + ".class";
+	}
+
+	private static String literal(String str) {
+		StringBuilder buf = new StringBuilder("\"");
+		for (char ch : str.toCharArray()) {
+			switch (ch) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			default:
+				buf.append(ch);
+			}
+		}
+		return buf.append('"').toString();
+	}
+
+}
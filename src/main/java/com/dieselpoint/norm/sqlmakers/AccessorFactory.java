@@ -0,0 +1,185 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Util;
+
+/**
+ * Creates getter and setter objects for pojo properties so that reading and
+ * writing a property doesn't have to go through Method.invoke() or
+ * Field.get()/set(). Getter and setter methods are bound with
+ * LambdaMetafactory, which produces small classes that the JIT can inline.
+ * Public fields are bound with MethodHandles.
+ * <p>
+ * If an accessor can't be created, for example because of a SecurityManager or
+ * module restrictions, the method returns null and StandardPojoInfo falls back
+ * to plain reflection.
+ * </p>
+ */
+class AccessorFactory {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	static Function<Object, Object> makeGetter(Class<?> clazz, Property prop) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+
+			if (prop.readMethod != null) {
+				Method m = prop.readMethod;
+				MethodHandle mh = lookup.unreflect(m);
+				CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+						GETTER_TYPE, mh, MethodType.methodType(Util.wrap(m.getReturnType()), m.getDeclaringClass()));
+				return castGetter(site.getTarget().invoke());
+			}
+
+			if (prop.field != null) {
+				MethodHandle mh = lookup.unreflectGetter(prop.field).asType(GETTER_TYPE);
+				return pojo -> {
+					try {
+						return (Object) mh.invokeExact(pojo);
+					} catch (RuntimeException | Error e) {
+						throw e;
+					} catch (Throwable t) {
+						throw new RuntimeException(t);
+					}
+				};
+			}
+
+		} catch (Throwable t) {
+			// fall back to reflection
+		}
+		return null;
+	}
+
+	static BiConsumer<Object, Object> makeSetter(Class<?> clazz, Property prop) {
+		BiConsumer<Object, Object> setter = makeExactSetter(clazz, prop);
+		if (setter == null) {
+			return null;
+		}
+		Class<?> type = Util
+				.wrap(prop.writeMethod != null ? prop.writeMethod.getParameterTypes()[0] : prop.field.getType());
+		if (!isNumeric(type)) {
+			return setter;
+		}
+		// the setter casts to the boxed type, so apply the widening primitive
+		// conversions that Field.set() and Method.invoke() allow, e.g. an Integer
+		// from the driver into a long
+		return (pojo, value) -> setter.accept(pojo, StandardPojoInfo.widen(value, type));
+	}
+
+	private static boolean isNumeric(Class<?> type) {
+		return rank(type) >= 0;
+	}
+
+	/**
+	 * Returns the position of the boxed type in the widening order byte, short,
+	 * int, long, float, double, or -1 if it isn't one of them.
+	 */
+	private static int rank(Class<?> type) {
+		if (type == Byte.class) {
+			return 0;
+		}
+		if (type == Short.class) {
+			return 1;
+		}
+		if (type == Integer.class) {
+			return 2;
+		}
+		if (type == Long.class) {
+			return 3;
+		}
+		if (type == Float.class) {
+			return 4;
+		}
+		if (type == Double.class) {
+			return 5;
+		}
+		return -1;
+	}
+
+	/**
+	 * Convert the value to the boxed numeric type, or return it unchanged if it
+	 * already is one. Only widening conversions are done; anything that could
+	 * lose information, like a Long into an int or a BigDecimal into a long,
+	 * throws a DbException.
+	 */
+	static Object toNumber(Number value, Class<?> type) {
+		if (type.isInstance(value)) {
+			return value;
+		}
+		int from = rank(value.getClass());
+		if (from < 0 || from > rank(type)) {
+			throw new DbException("Can't convert " + value.getClass().getName() + " value " + value + " to "
+					+ type.getName() + " without losing information");
+		}
+		if (type == Long.class) {
+			return value.longValue();
+		}
+		if (type == Integer.class) {
+			return value.intValue();
+		}
+		if (type == Short.class) {
+			return value.shortValue();
+		}
+		if (type == Float.class) {
+			return value.floatValue();
+		}
+		return value.doubleValue();
+	}
+
+	private static BiConsumer<Object, Object> makeExactSetter(Class<?> clazz, Property prop) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+
+			if (prop.writeMethod != null) {
+				Method m = prop.writeMethod;
+				MethodHandle mh = lookup.unreflect(m);
+				CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+						MethodType.methodType(BiConsumer.class), SETTER_TYPE, mh, MethodType.methodType(void.class,
+								m.getDeclaringClass(), Util.wrap(m.getParameterTypes()[0])));
+				return castSetter(site.getTarget().invoke());
+			}
+
+			if (prop.field != null) {
+				Field field = prop.field;
+				MethodHandle mh = lookup.unreflectSetter(field);
+				MethodHandle boxed = mh.asType(MethodType.methodType(void.class, Object.class,
+						Util.wrap(field.getType()))).asType(SETTER_TYPE);
+				return (pojo, value) -> {
+					try {
+						boxed.invokeExact(pojo, value);
+					} catch (RuntimeException | Error e) {
+						throw e;
+					} catch (Throwable t) {
+						throw new RuntimeException(t);
+					}
+				};
+			}
+
+		} catch (Throwable t) {
+			// fall back to reflection
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> castGetter(Object obj) {
+		return (Function<Object, Object>) obj;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> castSetter(Object obj) {
+		return (BiConsumer<Object, Object>) obj;
+	}
+
+}
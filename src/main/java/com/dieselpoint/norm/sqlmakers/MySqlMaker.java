@@ -1,16 +1,26 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.dieselpoint.norm.Query;
 
-import java.util.Objects;
+public class MySqlMaker extends StandardSqlMaker {
 
+	private boolean useRowAlias;
 
-public class MySqlMaker extends StandardSqlMaker {
+	// the "on duplicate key update" clause of multi-row upserts, keyed by row class
+	private Map<Class<?>, String> multiRowUpdateClauses = new ConcurrentHashMap<>();
+
+	public MySqlMaker() {
+		// the limit on ? placeholders in a single statement
+		maxParameters = 65535;
+	}
 
 	@Override
 	public String getUpsertSql(Query query, Object row) {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
-		return String.format(pojoInfo.upsertSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
+		return formatTable(SqlCache.Kind.UPSERT, row.getClass(), pojoInfo, query, pojoInfo.upsertSql);
 	}
 
 	@Override
@@ -28,6 +38,60 @@ public class MySqlMaker extends StandardSqlMaker {
 		return upsertArgs;
 	}
 
+	/**
+	 * Returns "insert into t (a,b) values (?,?),(?,?) on duplicate key update
+	 * a=values(a),b=values(b)", or with the row alias syntax, "... values
+	 * (?,?),(?,?) as new on duplicate key update a=new.a,b=new.b". Unlike the
+	 * single-row upsert, the args are not duplicated.
+	 */
+	@Override
+	public String getMultiRowUpsertSql(Query query, Class<?> rowClass, int rowCount) {
+		String clause = multiRowUpdateClauses.get(rowClass);
+		if (clause == null) {
+			clause = makeMultiRowUpdateClause(getPojoInfo(rowClass));
+			multiRowUpdateClauses.put(rowClass, clause);
+		}
+		return getMultiRowInsertSql(query, rowClass, rowCount) + clause;
+	}
+
+	private String makeMultiRowUpdateClause(StandardPojoInfo pojoInfo) {
+		StringBuilder buf = new StringBuilder();
+		if (useRowAlias) {
+			buf.append(" as new");
+		}
+		buf.append(" on duplicate key update ");
+
+		boolean first = true;
+		for (String colName : pojoInfo.insertColumnNames) {
+			if (first) {
+				first = false;
+			} else {
+				buf.append(',');
+			}
+			buf.append(colName);
+			if (useRowAlias) {
+				buf.append("=new.").append(colName);
+			} else {
+				buf.append("=values(").append(colName).append(')');
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Use the row alias syntax, "insert ... as new on duplicate key update
+	 * c=new.c", in multi-row upserts. It requires MySQL 8.0.19 or later. The
+	 * default is the older "c=values(c)" syntax, which MySQL 8.0.20 and later
+	 * deprecate.
+	 */
+	public void setUseRowAlias(boolean useRowAlias) {
+		this.useRowAlias = useRowAlias;
+		multiRowUpdateClauses.clear();
+	}
+
+	public boolean getUseRowAlias() {
+		return useRowAlias;
+	}
 
 	@Override
 	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
@@ -4,10 +4,14 @@ public interface PojoInfo {
 
 	public Object getValue(Object pojo, String name);
 
+	public Object getValue(Object pojo, Property prop);
+
 	public void putValue(Object pojo, String name, Object value);
 
 	public void putValue(Object pojo, String name, Object value, boolean ignoreIfMissing);
 
+	public void putValue(Object pojo, Property prop, Object value);
+
 	public String[] getGeneratedColumnNames();
 
 	public Property getProperty(String name);
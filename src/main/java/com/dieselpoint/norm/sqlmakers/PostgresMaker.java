@@ -1,9 +1,136 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 import jakarta.persistence.Column;
 
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.Util;
+
 public class PostgresMaker extends StandardSqlMaker {
 
+	public PostgresMaker() {
+		// the limit on ? placeholders in a single statement
+		maxParameters = 65535;
+	}
+
+	@Override
+	public String getUpsertSql(Query query, Object row) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.upsertSql == null) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		return formatTable(SqlCache.Kind.UPSERT, row.getClass(), pojoInfo, query, pojoInfo.upsertSql);
+	}
+
+	@Override
+	public Object[] getUpsertArgs(Query query, Object row) {
+		// the excluded.col references mean we don't need to duplicate the values
+		return getInsertArgs(query, row);
+	}
+
+	@Override
+	public String getMultiRowUpsertSql(Query query, Class<?> rowClass, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
+		if (pojoInfo.upsertSql == null) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		return getMultiRowInsertSql(query, rowClass, rowCount) + makeOnConflictClause(pojoInfo);
+	}
+
+	/**
+	 * Postgres returns the generated columns of both inserted and updated rows,
+	 * because the upsert sql always does an update on conflict.
+	 */
+	@Override
+	public boolean supportsUpsertGeneratedKeys() {
+		return true;
+	}
+
+	@Override
+	public String getExplainSql(String sql) {
+		return "explain (format json) " + sql;
+	}
+
+	/**
+	 * Binds the collection as a single array parameter, "= any(?)" or "&lt;&gt;
+	 * all(?)", so there is one statement no matter how many values there are.
+	 * Falls back to a list of placeholders if the driver can't bind the values
+	 * as an array, for example if they are of mixed types.
+	 */
+	@Override
+	protected void appendInList(StringBuilder buf, boolean not, Collection<?> values, List<Object> args) {
+		Class<?> elementType = null;
+		for (Object value : values) {
+			if (value == null) {
+				continue;
+			}
+			if (elementType == null) {
+				elementType = value.getClass();
+			} else if (elementType != value.getClass()) {
+				elementType = null;
+				break;
+			}
+		}
+		if (elementType == null || !ARRAY_TYPES.contains(elementType)) {
+			super.appendInList(buf, not, values, args);
+			return;
+		}
+
+		Object[] array = (Object[]) Array.newInstance(elementType, values.size());
+		buf.append(not ? "<> all(?)" : "= any(?)");
+		args.add(values.toArray(array));
+	}
+
+	// element types that the driver can bind as an array with setObject()
+	private static final Set<Class<?>> ARRAY_TYPES = Set.of(String.class, Long.class, Integer.class, Short.class,
+			Double.class, Float.class, Boolean.class);
+
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+
+		// INSERT INTO table (a,b,c) VALUES (1,2,3) ON CONFLICT (a) DO UPDATE SET b=EXCLUDED.b, c=EXCLUDED.c;
+
+		if (pojoInfo.primaryKeyNames.size() == 0) {
+			return;
+		}
+		pojoInfo.upsertSql = pojoInfo.insertSql + makeOnConflictClause(pojoInfo);
+	}
+
+	private String makeOnConflictClause(StandardPojoInfo pojoInfo) {
+
+		StringBuilder buf = new StringBuilder();
+		buf.append(" on conflict (");
+		buf.append(Util.join(pojoInfo.primaryKeyNames));
+		buf.append(") do update set ");
+
+		boolean first = true;
+		for (String colName : pojoInfo.insertColumnNames) {
+			if (pojoInfo.primaryKeyNames.contains(colName)) {
+				continue;
+			}
+			if (first) {
+				first = false;
+			} else {
+				buf.append(',');
+			}
+			buf.append(colName).append("=excluded.").append(colName);
+		}
+
+		if (first) {
+			// there are only key columns. Use a no-op update rather than "do nothing"
+			// so the row is still returned when generated keys are requested.
+			String key = pojoInfo.primaryKeyNames.get(0);
+			buf.append(key).append("=excluded.").append(key);
+		}
+
+		return buf.toString();
+	}
+
 	@Override
 	public String getCreateTableSql(Class<?> clazz) {
 		
@@ -2,6 +2,8 @@ package com.dieselpoint.norm.sqlmakers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Column;
@@ -24,4 +26,9 @@ public class Property {
 	public Column columnAnnotation;
 	public DbSerializable serializer;
 	public AttributeConverter converter;
+
+	// generated accessors, null if they couldn't be created.
+	// readMethod, writeMethod, and field are used as a fallback.
+	public Function<Object, Object> getter;
+	public BiConsumer<Object, Object> setter;
 }
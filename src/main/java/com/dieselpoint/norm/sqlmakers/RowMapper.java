@@ -0,0 +1,268 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Util;
+
+/**
+ * Converts rows of a ResultSet into objects of a given class. A RowMapper is
+ * built once for a particular combination of row class and result set columns,
+ * so the work of matching column labels to properties and finding the
+ * constructor is not repeated for every row. Get one from
+ * SqlMaker.getRowMapper().
+ * <p>
+ * Primitive pojo fields without a converter, serializer, or enum mapping are
+ * read with the typed ResultSet getters (getInt(), getLong(), etc.) and set
+ * without boxing. Note that this bypasses SqlMaker.convertValue() for those
+ * columns. A null in such a column throws a DbException, as it would on the
+ * generic path.
+ * </p>
+ */
+public class RowMapper<T> {
+
+	private static final int OBJECT = 0;
+	private static final int INT = 1;
+	private static final int LONG = 2;
+	private static final int DOUBLE = 3;
+	private static final int FLOAT = 4;
+	private static final int SHORT = 5;
+	private static final int BYTE = 6;
+	private static final int BOOLEAN = 7;
+
+	private enum Kind {
+		SINGLE_COLUMN, MAP, POJO
+	}
+
+	private final Kind kind;
+	private final MethodHandle constructor;
+	private final SqlMaker sqlMaker;
+	private final PojoInfo pojoInfo;
+
+	// these are indexed by column, starting at 0
+	private final String[] labels;
+	private final String[] typeNames;
+	private final Property[] props;
+	private final int[] getterTypes;
+
+	public RowMapper(Shape shape, SqlMaker sqlMaker) {
+
+		this.sqlMaker = sqlMaker;
+
+		Class<?> clazz = shape.clazz;
+		labels = shape.labels;
+		typeNames = shape.typeNames;
+		int colCount = labels.length;
+
+		if (Map.class.isAssignableFrom(clazz)) {
+			kind = Kind.MAP;
+		} else if (Util.isPrimitiveOrString(clazz) || clazz.getPackage().getName().startsWith("java.sql")) {
+			// if the receiver class is a primitive or jdbc type just grab the first column
+			kind = Kind.SINGLE_COLUMN;
+		} else {
+			kind = Kind.POJO;
+		}
+
+		if (kind == Kind.SINGLE_COLUMN) {
+			constructor = null;
+			pojoInfo = null;
+			props = null;
+			getterTypes = null;
+			return;
+		}
+
+		constructor = findConstructor(clazz);
+
+		if (kind == Kind.MAP) {
+			pojoInfo = null;
+			props = null;
+			getterTypes = null;
+			return;
+		}
+
+		pojoInfo = sqlMaker.getPojoInfo(clazz);
+		props = new Property[colCount];
+		getterTypes = new int[colCount];
+		for (int i = 0; i < colCount; i++) {
+			Property prop = pojoInfo.getProperty(labels[i]);
+			props[i] = prop;
+			getterTypes[i] = prop == null ? OBJECT : getGetterType(prop);
+		}
+	}
+
+	private static MethodHandle findConstructor(Class<?> clazz) {
+		try {
+			Constructor<?> ctor = clazz.getDeclaredConstructor();
+			MethodHandle mh;
+			try {
+				mh = MethodHandles.lookup().unreflectConstructor(ctor);
+			} catch (IllegalAccessException e) {
+				ctor.setAccessible(true);
+				mh = MethodHandles.lookup().unreflectConstructor(ctor);
+			}
+			return mh.asType(MethodType.methodType(Object.class));
+		} catch (Throwable t) {
+			throw new DbException("Could not find a no-arg constructor for " + clazz.getName(), t);
+		}
+	}
+
+	/**
+	 * Returns the typed getter to use for this property, or OBJECT if the value
+	 * must go through the generic conversion path.
+	 */
+	private static int getGetterType(Property prop) {
+		if (prop.field == null || prop.serializer != null || prop.converter != null || prop.isEnumField) {
+			return OBJECT;
+		}
+		Class<?> type = prop.dataType;
+		if (type == int.class) {
+			return INT;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == double.class) {
+			return DOUBLE;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == boolean.class) {
+			return BOOLEAN;
+		}
+		return OBJECT;
+	}
+
+	/**
+	 * Returns true if rows are mapped to pojos, rather than Maps or single column
+	 * values.
+	 */
+	public boolean isPojo() {
+		return kind == Kind.POJO;
+	}
+
+	/**
+	 * Read the current row of the result set into a new object.
+	 */
+	@SuppressWarnings("unchecked")
+	public T map(ResultSet rs) throws SQLException {
+
+		if (kind == Kind.SINGLE_COLUMN) {
+			return (T) rs.getObject(1);
+		}
+
+		Object row = newInstance();
+
+		if (kind == Kind.MAP) {
+			Map<String, Object> map = (Map<String, Object>) row;
+			for (int i = 0; i < labels.length; i++) {
+				map.put(labels[i], rs.getObject(i + 1));
+			}
+			return (T) row;
+		}
+
+		for (int i = 0; i < props.length; i++) {
+			Property prop = props[i];
+			if (prop == null) {
+				continue;
+			}
+			int col = i + 1;
+			try {
+				Field field = prop.field;
+				switch (getterTypes[i]) {
+				case INT:
+					field.setInt(row, rs.getInt(col));
+					break;
+				case LONG:
+					field.setLong(row, rs.getLong(col));
+					break;
+				case DOUBLE:
+					field.setDouble(row, rs.getDouble(col));
+					break;
+				case FLOAT:
+					field.setFloat(row, rs.getFloat(col));
+					break;
+				case SHORT:
+					field.setShort(row, rs.getShort(col));
+					break;
+				case BYTE:
+					field.setByte(row, rs.getByte(col));
+					break;
+				case BOOLEAN:
+					field.setBoolean(row, rs.getBoolean(col));
+					break;
+				default:
+					Object colValue = sqlMaker.convertValue(rs.getObject(col), typeNames[i]);
+					pojoInfo.putValue(row, prop, colValue);
+				}
+				if (getterTypes[i] != OBJECT && rs.wasNull()) {
+					// the typed getters return 0 or false for null, which a primitive can't hold
+					throw new DbException(
+							"Could not set value into pojo. Field: " + prop.field.toString() + " value: null");
+				}
+			} catch (IllegalAccessException e) {
+				throw new DbException("Could not set value into pojo. Field: " + prop.field.toString(), e);
+			}
+		}
+		return (T) row;
+	}
+
+	private Object newInstance() {
+		try {
+			return (Object) constructor.invokeExact();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new DbException(t);
+		}
+	}
+
+	/**
+	 * Identifies a RowMapper by row class and the labels and types of the result
+	 * set columns.
+	 */
+	public static class Shape {
+
+		private final Class<?> clazz;
+		private final String[] labels;
+		private final String[] typeNames;
+		private final int hashCode;
+
+		public Shape(Class<?> clazz, ResultSetMetaData meta) throws SQLException {
+			this.clazz = clazz;
+			int colCount = meta.getColumnCount();
+			labels = new String[colCount];
+			typeNames = new String[colCount];
+			for (int i = 0; i < colCount; i++) {
+				labels[i] = meta.getColumnLabel(i + 1);
+				typeNames[i] = meta.getColumnTypeName(i + 1);
+			}
+			hashCode = 31 * (31 * clazz.hashCode() + Arrays.hashCode(labels)) + Arrays.hashCode(typeNames);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Shape)) {
+				return false;
+			}
+			Shape other = (Shape) obj;
+			return clazz == other.clazz && Arrays.equals(labels, other.labels)
+					&& Arrays.equals(typeNames, other.typeNames);
+		}
+	}
+
+}
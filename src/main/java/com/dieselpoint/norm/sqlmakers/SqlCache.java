@@ -0,0 +1,122 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches generated sql so that statements for the same query shape aren't
+ * rebuilt or reformatted on every call. Entries are keyed by the kind of
+ * statement, the row class, the table name override, and the where and order
+ * by clauses. The cache is bounded; when it is full, an arbitrary batch of
+ * entries is dropped to make room.
+ */
+public class SqlCache {
+
+	public enum Kind {
+		SELECT, COUNT, INSERT, UPDATE, DELETE, UPSERT
+	}
+
+	private final ConcurrentHashMap<Key, String> map = new ConcurrentHashMap<>();
+	private volatile int maxSize;
+
+	public SqlCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Return the cached sql, or build it with the supplier and cache it.
+	 */
+	public String get(Kind kind, Class<?> rowClass, String table, String where, String orderBy,
+			Supplier<String> builder) {
+		if (maxSize <= 0) {
+			return builder.get();
+		}
+		Key key = new Key(kind, rowClass, table, where, orderBy);
+		String sql = map.get(key);
+		if (sql == null) {
+			sql = builder.get();
+			if (map.size() >= maxSize) {
+				evict();
+			}
+			String existing = map.putIfAbsent(key, sql);
+			if (existing != null) {
+				sql = existing;
+			}
+		}
+		return sql;
+	}
+
+	private void evict() {
+		// drop about a tenth of the entries
+		int toRemove = Math.max(1, maxSize / 10);
+		Iterator<Key> it = map.keySet().iterator();
+		while (toRemove-- > 0 && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Set the maximum number of entries. Zero turns off caching.
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		if (maxSize <= 0) {
+			map.clear();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public void clear() {
+		map.clear();
+	}
+
+	private static class Key {
+
+		private final Kind kind;
+		private final Class<?> rowClass;
+		private final String table;
+		private final String where;
+		private final String orderBy;
+		private final int hashCode;
+
+		Key(Kind kind, Class<?> rowClass, String table, String where, String orderBy) {
+			this.kind = kind;
+			this.rowClass = rowClass;
+			this.table = table;
+			this.where = where;
+			this.orderBy = orderBy;
+			int h = kind.hashCode();
+			h = 31 * h + (rowClass == null ? 0 : rowClass.hashCode());
+			h = 31 * h + (table == null ? 0 : table.hashCode());
+			h = 31 * h + (where == null ? 0 : where.hashCode());
+			h = 31 * h + (orderBy == null ? 0 : orderBy.hashCode());
+			this.hashCode = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return kind == other.kind && rowClass == other.rowClass && Objects.equals(table, other.table)
+					&& Objects.equals(where, other.where) && Objects.equals(orderBy, other.orderBy);
+		}
+	}
+
+}
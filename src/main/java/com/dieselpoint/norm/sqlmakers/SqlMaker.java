@@ -1,5 +1,10 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+
 import com.dieselpoint.norm.Query;
 
 public interface SqlMaker {
@@ -8,18 +13,37 @@ public interface SqlMaker {
 
 	public Object[] getInsertArgs(Query query, Object row);
 
+	public String getMultiRowInsertSql(Query query, Class<?> rowClass, int rowCount);
+
+	public int getMaxParameters();
+
 	public String getUpdateSql(Query query, Object row);
 
 	public Object[] getUpdateArgs(Query query, Object row);
 
+	/**
+	 * Update sql that sets only the given columns. Bits index into the array
+	 * returned by getUpdateArgs(Query, Object); a bit set on a primary key
+	 * position means the full update sql is returned.
+	 */
+	public String getUpdateSql(Query query, Object row, BitSet columns);
+
+	public Object[] getUpdateArgs(Query query, Object row, BitSet columns);
+
 	public String getDeleteSql(Query query, Object row);
 
 	public Object[] getDeleteArgs(Query query, Object row);
 
+	public String getMultiRowDeleteSql(Query query, Class<?> rowClass, int rowCount);
+
 	public String getUpsertSql(Query query, Object row);
 
 	public Object[] getUpsertArgs(Query query, Object row);
 
+	public String getMultiRowUpsertSql(Query query, Class<?> rowClass, int rowCount);
+
+	public boolean supportsUpsertGeneratedKeys();
+
 	public String getSelectSql(Query query, Class<?> rowClass);
 	public String getSelectCountSql(Query query, Class<?> tableClass);
 
@@ -27,6 +51,20 @@ public interface SqlMaker {
 
 	public PojoInfo getPojoInfo(Class<?> rowClass);
 
+	public <T> RowMapper<T> getRowMapper(Class<T> rowClass, ResultSetMetaData meta) throws SQLException;
+
 	public Object convertValue(Object value, String columnTypeName);
 
+	/**
+	 * Rewrite each "in (?)" in a where clause whose arg is a Collection so that it
+	 * binds the collection's values. The args list is modified in place. Returns
+	 * the new where clause.
+	 */
+	public String expandInLists(String where, List<Object> args);
+
+	/**
+	 * Returns the sql that shows the database's plan for a statement.
+	 */
+	public String getExplainSql(String sql);
+
 }
@@ -11,9 +11,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Column;
@@ -49,6 +51,13 @@ public class StandardPojoInfo implements PojoInfo {
 	public String insertSql;
 	public int insertSqlArgCount;
 	public String[] insertColumnNames;
+	public Property[] insertProperties;
+
+	// multi-row insert sql, keyed by number of rows
+	public Map<Integer, String> multiRowInsertSql = new ConcurrentHashMap<>();
+
+	// multi-row delete sql, keyed by number of rows
+	public Map<Integer, String> multiRowDeleteSql = new ConcurrentHashMap<>();
 
 	public String upsertSql;
 	public int upsertSqlArgCount;
@@ -56,10 +65,21 @@ public class StandardPojoInfo implements PojoInfo {
 
 	public String updateSql;
 	public String[] updateColumnNames;
+	public Property[] updateProperties;
 	public int updateSqlArgCount;
 
+	// update sql that sets only some of the update columns, keyed by column index
+	public Map<BitSet, String> partialUpdateSql = new ConcurrentHashMap<>();
+
 	public String selectColumns;
 
+	/**
+	 * For subclasses that fill in the properties themselves, like the ones
+	 * generated by PojoInfoProcessor.
+	 */
+	protected StandardPojoInfo() {
+	}
+
 	public StandardPojoInfo(Class<?> clazz) {
 
 		try {
@@ -162,6 +182,11 @@ public class StandardPojoInfo implements PojoInfo {
 			props.add(prop);
 		}
 
+		for (Property prop : props) {
+			prop.getter = AccessorFactory.makeGetter(clazz, prop);
+			prop.setter = AccessorFactory.makeSetter(clazz, prop);
+		}
+
 		List<String> genCols = new ArrayList<>();
 		for (Property prop : props) {
 			if (prop.isGenerated) {
@@ -228,16 +253,24 @@ public class StandardPojoInfo implements PojoInfo {
 
 	public Object getValue(Object pojo, String name) {
 
-		try {
+		Property prop = propertyMap.get(name);
+		if (prop == null) {
+			throw new DbException("No such field: " + name);
+		}
+		return getValue(pojo, prop);
+	}
 
-			Property prop = propertyMap.get(name);
-			if (prop == null) {
-				throw new DbException("No such field: " + name);
-			}
+	@Override
+	public Object getValue(Object pojo, Property prop) {
+
+		try {
 
 			Object value = null;
 
-			if (prop.readMethod != null) {
+			if (prop.getter != null) {
+				value = prop.getter.apply(pojo);
+
+			} else if (prop.readMethod != null) {
 				value = prop.readMethod.invoke(pojo);
 
 			} else if (prop.field != null) {
@@ -283,6 +316,11 @@ public class StandardPojoInfo implements PojoInfo {
 			}
 			throw new DbException("No such field: " + name);
 		}
+		putValue(pojo, prop, value);
+	}
+
+	@Override
+	public void putValue(Object pojo, Property prop, Object value) {
 
 		if (value != null) {
 			if (prop.serializer != null) {
@@ -296,6 +334,21 @@ public class StandardPojoInfo implements PojoInfo {
 			}
 		}
 
+		if (prop.setter != null) {
+			try {
+				if (value instanceof BigInteger) {
+					if (prop.dataType.equals(Long.TYPE) || prop.dataType.equals(Long.class)) {
+						value = ((BigInteger) value).longValue();
+					}
+				}
+				prop.setter.accept(pojo, value);
+			} catch (RuntimeException e) {
+				throw new DbException("Could not write value into pojo. Property: " + prop.name + " value: " + value
+						+ " value class: " + (value == null ? null : value.getClass().toString()), e);
+			}
+			return;
+		}
+
 		if (prop.writeMethod != null) {
 			try {
 				if (value instanceof BigInteger && prop.writeMethod.getParameterCount() >= 1) {
@@ -330,6 +383,16 @@ public class StandardPojoInfo implements PojoInfo {
 
 	}
 
+	/**
+	 * Convert a number to the boxed numeric type if that is a widening
+	 * conversion, such as an Integer to a Long. Lossy conversions throw a
+	 * DbException, and other values are returned unchanged. Generated pojo infos
+	 * call this from their setters.
+	 */
+	public static Object widen(Object value, Class<?> type) {
+		return value instanceof Number ? AccessorFactory.toNumber((Number) value, type) : value;
+	}
+
 	/**
 	 * Convert a string to an enum const of the appropriate class.
 	 */
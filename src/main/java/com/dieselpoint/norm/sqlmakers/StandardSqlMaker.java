@@ -1,7 +1,13 @@
 package com.dieselpoint.norm.sqlmakers;
 
 import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -17,26 +23,115 @@ import com.dieselpoint.norm.Util;
  */
 public class StandardSqlMaker implements SqlMaker {
 
-	private static ConcurrentHashMap<Class<?>, StandardPojoInfo> map = new ConcurrentHashMap<>();
+	// per instance, because subclasses generate different sql into the pojo info
+	private ConcurrentHashMap<Class<?>, StandardPojoInfo> pojoInfos = new ConcurrentHashMap<>();
 
-	public synchronized StandardPojoInfo getPojoInfo(Class<?> rowClass) {
-		StandardPojoInfo pi = map.get(rowClass);
+	private ConcurrentHashMap<RowMapper.Shape, RowMapper<?>> rowMappers = new ConcurrentHashMap<>();
+
+	protected int maxParameters = 999;
+
+	protected SqlCache sqlCache = new SqlCache(10_000);
+
+	/**
+	 * Returns the pojo info for a class, creating it the first time. No lock is
+	 * taken. If two threads ask for a new class at the same time, both may build
+	 * it, but only one is published and both get that one.
+	 */
+	public StandardPojoInfo getPojoInfo(Class<?> rowClass) {
+		StandardPojoInfo pi = pojoInfos.get(rowClass);
 		if (pi == null) {
-			pi = new StandardPojoInfo(rowClass);
-			map.put(rowClass, pi);
+			pi = makePojoInfo(rowClass);
+			StandardPojoInfo existing = pojoInfos.putIfAbsent(rowClass, pi);
+			if (existing != null) {
+				pi = existing;
+			}
+		}
+		return pi;
+	}
 
-			makeInsertSql(pi);
-			makeUpsertSql(pi);
-			makeUpdateSql(pi);
-			makeSelectColumns(pi);
+	protected StandardPojoInfo makePojoInfo(Class<?> rowClass) {
+		StandardPojoInfo pi = loadGeneratedPojoInfo(rowClass);
+		if (pi == null) {
+			pi = new StandardPojoInfo(rowClass);
 		}
+		makeInsertSql(pi);
+		makeUpsertSql(pi);
+		makeUpdateSql(pi);
+		makeSelectColumns(pi);
 		return pi;
 	}
 
+	/**
+	 * Returns the pojo info generated by PojoInfoProcessor for this class, or null
+	 * if there isn't one.
+	 */
+	protected StandardPojoInfo loadGeneratedPojoInfo(Class<?> rowClass) {
+		if (rowClass.isPrimitive() || rowClass.isArray() || Map.class.isAssignableFrom(rowClass)) {
+			return null;
+		}
+		ClassLoader loader = rowClass.getClassLoader();
+		if (loader == null) {
+			// a jdk class
+			return null;
+		}
+		String name = rowClass.getName().replace('$', '_') + "_NormPojoInfo";
+		Class<?> generated;
+		try {
+			generated = Class.forName(name, true, loader);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		try {
+			return (StandardPojoInfo) generated.getConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Returns a RowMapper for this row class and result set. RowMappers are
+	 * cached, so one is built only the first time a particular combination of
+	 * class and columns is seen.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> RowMapper<T> getRowMapper(Class<T> rowClass, ResultSetMetaData meta) throws SQLException {
+		RowMapper.Shape shape = new RowMapper.Shape(rowClass, meta);
+		RowMapper<?> mapper = rowMappers.get(shape);
+		if (mapper == null) {
+			mapper = new RowMapper<T>(shape, this);
+			RowMapper<?> existing = rowMappers.putIfAbsent(shape, mapper);
+			if (existing != null) {
+				mapper = existing;
+			}
+		}
+		return (RowMapper<T>) mapper;
+	}
+
+	/**
+	 * Set the maximum number of generated sql statements to cache. Zero turns off
+	 * the cache. The default is 10,000.
+	 */
+	public void setSqlCacheSize(int size) {
+		sqlCache.setMaxSize(size);
+	}
+
+	/**
+	 * Fill in the table name in a sql template, caching the result so the
+	 * formatting isn't repeated for every row. The template is part of the cache
+	 * key; since Strings cache their hash codes, that costs little.
+	 */
+	protected String formatTable(SqlCache.Kind kind, Class<?> rowClass, StandardPojoInfo pojoInfo, Query query,
+			String template) {
+		String override = query.getTable();
+		return sqlCache.get(kind, rowClass, override, template, null,
+				() -> String.format(template, Objects.requireNonNullElse(override, pojoInfo.table)));
+	}
+
 	@Override
 	public String getInsertSql(Query query, Object row) {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
-		return String.format(pojoInfo.insertSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
+		return formatTable(SqlCache.Kind.INSERT, row.getClass(), pojoInfo, query, pojoInfo.insertSql);
 	}
 
 	@Override
@@ -44,18 +139,68 @@ public class StandardSqlMaker implements SqlMaker {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
 		Object[] args = new Object[pojoInfo.insertSqlArgCount];
 		for (int i = 0; i < pojoInfo.insertSqlArgCount; i++) {
-			args[i] = pojoInfo.getValue(row, pojoInfo.insertColumnNames[i]);
+			args[i] = pojoInfo.getValue(row, pojoInfo.insertProperties[i]);
 		}
 		return args;
 	}
 
+	/**
+	 * Returns an insert statement with rowCount sets of values, that is, "insert
+	 * into t (a,b) values (?,?),(?,?),...". The sql is cached per row count, so
+	 * callers should use a small number of distinct row counts.
+	 */
+	@Override
+	public String getMultiRowInsertSql(Query query, Class<?> rowClass, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
+		String sql = pojoInfo.multiRowInsertSql.get(rowCount);
+		if (sql == null) {
+			sql = makeMultiRowInsertSql(pojoInfo, rowCount);
+			pojoInfo.multiRowInsertSql.put(rowCount, sql);
+		}
+		return formatTable(SqlCache.Kind.INSERT, rowClass, pojoInfo, query, sql);
+	}
+
+	public String makeMultiRowInsertSql(StandardPojoInfo pojoInfo, int rowCount) {
+		String values = "(" + Util.getQuestionMarks(pojoInfo.insertSqlArgCount) + ")";
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into %s (");
+		buf.append(Util.join(pojoInfo.insertColumnNames));
+		buf.append(") values ");
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(values);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * The maximum number of ? parameters the database accepts in a single
+	 * statement. This limits the number of rows in a multi-row insert. The
+	 * default of 999 is the lowest common limit, from older versions of SQLite.
+	 */
+	@Override
+	public int getMaxParameters() {
+		return maxParameters;
+	}
+
+	/**
+	 * Set the maximum number of parameters in a single statement. SQLite 3.32
+	 * and later accept 32766.
+	 */
+	public void setMaxParameters(int maxParameters) {
+		this.maxParameters = maxParameters;
+	}
+
 	@Override
 	public String getUpdateSql(Query query, Object row) {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
 		if (pojoInfo.primaryKeyNames.size() == 0) {
 			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
 		}
-		return String.format(pojoInfo.updateSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
+		return formatTable(SqlCache.Kind.UPDATE, row.getClass(), pojoInfo, query, pojoInfo.updateSql);
 	}
 
 	@Override
@@ -66,7 +211,7 @@ public class StandardSqlMaker implements SqlMaker {
 
 		Object[] args = new Object[pojoInfo.updateSqlArgCount];
 		for (int i = 0; i < pojoInfo.updateSqlArgCount - numKeys; i++) {
-			args[i] = pojoInfo.getValue(row, pojoInfo.updateColumnNames[i]);
+			args[i] = pojoInfo.getValue(row, pojoInfo.updateProperties[i]);
 		}
 		// add the value for the where clause to the end
 		for (int i = 0; i < numKeys; i++) {
@@ -76,9 +221,71 @@ public class StandardSqlMaker implements SqlMaker {
 		return args;
 	}
 
+	@Override
+	public String getUpdateSql(Query query, Object row, BitSet columns) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (isFullUpdate(pojoInfo, columns)) {
+			return getUpdateSql(query, row);
+		}
+		String sql = pojoInfo.partialUpdateSql.get(columns);
+		if (sql == null) {
+			BitSet key = (BitSet) columns.clone();
+			sql = pojoInfo.partialUpdateSql.computeIfAbsent(key, k -> makePartialUpdateSql(pojoInfo, k));
+		}
+		return formatTable(SqlCache.Kind.UPDATE, row.getClass(), pojoInfo, query, sql);
+	}
+
+	@Override
+	public Object[] getUpdateArgs(Query query, Object row, BitSet columns) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (isFullUpdate(pojoInfo, columns)) {
+			return getUpdateArgs(query, row);
+		}
+
+		int numKeys = pojoInfo.primaryKeyNames.size();
+		Object[] args = new Object[columns.cardinality() + numKeys];
+		int j = 0;
+		for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+			args[j++] = pojoInfo.getValue(row, pojoInfo.updateProperties[i]);
+		}
+		for (int i = 0; i < numKeys; i++) {
+			args[j++] = pojoInfo.getValue(row, pojoInfo.primaryKeyNames.get(i));
+		}
+		return args;
+	}
+
+	private boolean isFullUpdate(StandardPojoInfo pojoInfo, BitSet columns) {
+		int numCols = pojoInfo.updateColumnNames.length;
+		return columns.nextSetBit(numCols) >= 0 || columns.cardinality() == numCols;
+	}
+
+	public String makePartialUpdateSql(StandardPojoInfo pojoInfo, BitSet columns) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("update %s set ");
+
+		boolean first = true;
+		for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+			if (!first) {
+				buf.append(',');
+			}
+			first = false;
+			buf.append(pojoInfo.updateColumnNames[i]).append("=?");
+		}
+		buf.append(" where ");
+
+		for (int i = 0; i < pojoInfo.primaryKeyNames.size(); i++) {
+			if (i > 0) {
+				buf.append(" and ");
+			}
+			buf.append(pojoInfo.primaryKeyNames.get(i)).append("=?");
+		}
+		return buf.toString();
+	}
+
 	public void makeUpdateSql(StandardPojoInfo pojoInfo) {
 
 		ArrayList<String> cols = new ArrayList<>();
+		ArrayList<Property> props = new ArrayList<>();
 		for (Property prop : pojoInfo.propertyMap.values()) {
 
 			if (prop.isPrimaryKey) {
@@ -90,8 +297,10 @@ public class StandardSqlMaker implements SqlMaker {
 			}
 
 			cols.add(prop.name);
+			props.add(prop);
 		}
 		pojoInfo.updateColumnNames = cols.toArray(new String[cols.size()]);
+		pojoInfo.updateProperties = props.toArray(new Property[props.size()]);
 		pojoInfo.updateSqlArgCount = pojoInfo.updateColumnNames.length + pojoInfo.primaryKeyNames.size(); // + # of
 																											// primary
 																											// keys for
@@ -121,13 +330,16 @@ public class StandardSqlMaker implements SqlMaker {
 
 	public void makeInsertSql(StandardPojoInfo pojoInfo) {
 		ArrayList<String> cols = new ArrayList<>();
+		ArrayList<Property> props = new ArrayList<>();
 		for (Property prop : pojoInfo.propertyMap.values()) {
 			if (prop.isGenerated) {
 				continue;
 			}
 			cols.add(prop.name);
+			props.add(prop);
 		}
 		pojoInfo.insertColumnNames = cols.toArray(new String[cols.size()]);
+		pojoInfo.insertProperties = props.toArray(new Property[props.size()]);
 		pojoInfo.insertSqlArgCount = pojoInfo.insertColumnNames.length;
 
 		pojoInfo.insertSql = "insert into %s (" + Util.join(pojoInfo.insertColumnNames) + // comma sep list?
@@ -153,18 +365,21 @@ public class StandardSqlMaker implements SqlMaker {
 	@Override
 	public String getSelectSql(Query query, Class<?> rowClass) {
 
-		// unlike insert and update, this needs to be done dynamically
-		// and can't be precalculated because of the where and order by
-
-		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
-		String columns = pojoInfo.selectColumns;
+		// unlike insert and update, this can't be precalculated because of the
+		// where and order by, but repeated shapes are cached
 
 		String where = query.getWhere();
-		String table = query.getTable();
+		String override = query.getTable();
+		String orderBy = query.getOrderBy();
+		return sqlCache.get(SqlCache.Kind.SELECT, rowClass, override, where, orderBy,
+				() -> makeSelectSql(getPojoInfo(rowClass), override, where, orderBy));
+	}
+
+	public String makeSelectSql(StandardPojoInfo pojoInfo, String table, String where, String orderBy) {
+		String columns = pojoInfo.selectColumns;
 		if (table == null) {
 			table = pojoInfo.table;
 		}
-		String orderBy = query.getOrderBy();
 
 		StringBuilder out = new StringBuilder();
 		out.append("select ");
@@ -185,23 +400,22 @@ public class StandardSqlMaker implements SqlMaker {
 	@Override
 	public String getSelectCountSql(Query query, Class<?> tableClass) {
 
-		// unlike insert and update, this needs to be done dynamically
-		// and can't be precalculated because of the where and order by
+		String override = query.getTable();
+		String where = query.getWhere();
+		if (override == null && tableClass == null) {
+			throw new DbException("You must specify a table name. Use either db.table(\"XXX\").where(...).count(...), or db.where(...).count(Pojoclass.class)" );
+		}
+		return sqlCache.get(SqlCache.Kind.COUNT, tableClass, override, where, null,
+				() -> makeSelectCountSql(tableClass, override, where));
+	}
 
-		String table = query.getTable();
+	private String makeSelectCountSql(Class<?> tableClass, String table, String where) {
 		if (table == null) {
-			if (tableClass != null) {
-				StandardPojoInfo pojoInfo = getPojoInfo(tableClass);
-				table = pojoInfo.table;
-			}
-			else {
-				throw new DbException("You must specify a table name. Use either db.table(\"XXX\").where(...).count(...), or db.where(...).count(Pojoclass.class)" );
-			}
+			table = getPojoInfo(tableClass).table;
 		}
 		StringBuilder out = new StringBuilder();
 		out.append("select count(*) from ");
 		out.append(table);
-		String where = query.getWhere();
 		if (where != null) {
 			out.append(" where ");
 			out.append(where);
@@ -312,6 +526,208 @@ public class StandardSqlMaker implements SqlMaker {
 		return value;
 	}
 
+	/**
+	 * Expands "in (?)" into "in (?,?,?,?)", one placeholder per value. The number
+	 * of placeholders is rounded up to a power of two, padded by repeating the
+	 * last value, so that lists of different lengths share a few statements
+	 * rather than each getting its own. With an empty collection, the whole
+	 * comparison is replaced by 1=0, or 1=1 for "not in", because "in ()" isn't
+	 * valid sql. Collections bound to a ? outside of "in (?)" are left alone, so
+	 * they can still go into array columns.
+	 */
+	@Override
+	public String expandInLists(String where, List<Object> args) {
+		if (where == null || args == null) {
+			return where;
+		}
+		boolean any = false;
+		for (Object arg : args) {
+			if (arg instanceof Collection) {
+				any = true;
+				break;
+			}
+		}
+		if (!any) {
+			return where;
+		}
+
+		StringBuilder buf = new StringBuilder();
+		List<Object> newArgs = new ArrayList<>();
+		int argIndex = 0;
+		int copied = 0;
+		int len = where.length();
+
+		for (int i = 0; i < len; i++) {
+			char ch = where.charAt(i);
+			if (ch == '\'' || ch == '"') {
+				// skip quoted strings and identifiers; a doubled quote is an escape
+				int end = where.indexOf(ch, i + 1);
+				i = end < 0 ? len : end;
+				continue;
+			}
+			if (ch != '?') {
+				continue;
+			}
+			if (argIndex >= args.size()) {
+				break;
+			}
+			Object arg = args.get(argIndex++);
+
+			int start;
+			int end;
+			if (arg instanceof Collection && (start = findInStart(where, i)) >= 0
+					&& (end = findInEnd(where, i)) >= 0) {
+				boolean not = where.regionMatches(true, start, "not", 0, 3);
+				Collection<?> values = (Collection<?>) arg;
+				int operand = values.isEmpty() ? findOperandStart(where, start) : -1;
+				if (operand >= copied) {
+					buf.append(where, copied, operand);
+					buf.append(not ? "1=1" : "1=0");
+				} else if (values.isEmpty() && not) {
+					// "not in (null)" would match nothing
+					throw new DbException("Can't find the operand of an empty \"not in\" list: " + where);
+				} else {
+					buf.append(where, copied, start);
+					appendInList(buf, not, values, newArgs);
+				}
+				copied = end;
+				i = end - 1;
+			} else {
+				newArgs.add(arg);
+			}
+		}
+		buf.append(where, copied, len);
+
+		// any args without a placeholder are passed through as they were
+		for (; argIndex < args.size(); argIndex++) {
+			newArgs.add(args.get(argIndex));
+		}
+
+		args.clear();
+		args.addAll(newArgs);
+		return buf.toString();
+	}
+
+	@Override
+	public String getExplainSql(String sql) {
+		return "explain " + sql;
+	}
+
+	/**
+	 * Append the replacement for "[not] in (?)" and its args. Subclasses can
+	 * override this to bind the collection some other way.
+	 */
+	protected void appendInList(StringBuilder buf, boolean not, Collection<?> values, List<Object> args) {
+		int size = values.size();
+		int bucket = 1;
+		while (bucket < size) {
+			bucket <<= 1;
+		}
+
+		buf.append(not ? "not in (" : "in (");
+		for (int i = 0; i < bucket; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append('?');
+		}
+		buf.append(')');
+
+		Object last = null;
+		for (Object value : values) {
+			args.add(value);
+			last = value;
+		}
+		for (int i = size; i < bucket; i++) {
+			args.add(last);
+		}
+	}
+
+	/**
+	 * If the ? at pos is preceded by "in (" or "not in (", return the index of the
+	 * "in" or "not". Otherwise return -1.
+	 */
+	private static int findInStart(String where, int pos) {
+		int i = skipSpaceBack(where, pos - 1);
+		if (i < 0 || where.charAt(i) != '(') {
+			return -1;
+		}
+		i = skipSpaceBack(where, i - 1);
+		if (i < 1 || !where.regionMatches(true, i - 1, "in", 0, 2) || !isWordStart(where, i - 1)) {
+			return -1;
+		}
+		int start = i - 1;
+		i = skipSpaceBack(where, start - 1);
+		if (i >= 2 && i < start - 1 && where.regionMatches(true, i - 2, "not", 0, 3) && isWordStart(where, i - 2)) {
+			start = i - 2;
+		}
+		return start;
+	}
+
+	/**
+	 * Return the index where the operand of the "in" or "not" at pos starts: a
+	 * column name, possibly qualified or quoted, or a parenthesized expression
+	 * or function call. Returns -1 if there isn't one.
+	 */
+	private static int findOperandStart(String where, int pos) {
+		int i = skipSpaceBack(where, pos - 1);
+		if (i < 0) {
+			return -1;
+		}
+		if (where.charAt(i) == ')') {
+			int depth = 0;
+			for (; i >= 0; i--) {
+				char ch = where.charAt(i);
+				if (ch == ')') {
+					depth++;
+				} else if (ch == '(' && --depth == 0) {
+					break;
+				}
+			}
+			if (i < 0) {
+				return -1;
+			}
+			int name = i;
+			while (name > 0 && isNamePart(where.charAt(name - 1))) {
+				name--;
+			}
+			String word = where.substring(name, i).toLowerCase();
+			return word.equals("and") || word.equals("or") || word.equals("not") ? i : name;
+		}
+		int end = i;
+		while (i >= 0 && (isNamePart(where.charAt(i)) || where.charAt(i) == '"' || where.charAt(i) == '`')) {
+			i--;
+		}
+		return i == end ? -1 : i + 1;
+	}
+
+	private static boolean isNamePart(char ch) {
+		return Character.isJavaIdentifierPart(ch) || ch == '.';
+	}
+
+	/**
+	 * If the ? at pos is followed by ")", return the index after it. Otherwise
+	 * return -1.
+	 */
+	private static int findInEnd(String where, int pos) {
+		int i = pos + 1;
+		while (i < where.length() && Character.isWhitespace(where.charAt(i))) {
+			i++;
+		}
+		return i < where.length() && where.charAt(i) == ')' ? i + 1 : -1;
+	}
+
+	private static int skipSpaceBack(String str, int i) {
+		while (i >= 0 && Character.isWhitespace(str.charAt(i))) {
+			i--;
+		}
+		return i;
+	}
+
+	private static boolean isWordStart(String str, int i) {
+		return i == 0 || !Character.isJavaIdentifierPart(str.charAt(i - 1));
+	}
+
 	@Override
 	public String getDeleteSql(Query query, Object row) {
 
@@ -324,7 +740,12 @@ public class StandardSqlMaker implements SqlMaker {
 				throw new DbException("You must specify a table name");
 			}
 		}
+		String tableName = table;
+		return sqlCache.get(SqlCache.Kind.DELETE, row.getClass(), query.getTable(), null, null,
+				() -> makeDeleteSql(pojoInfo, tableName));
+	}
 
+	private String makeDeleteSql(StandardPojoInfo pojoInfo, String table) {
 		StringBuilder builder = new StringBuilder("delete from ");
 		builder.append(table).append(" where ");
 		for (int i = 0; i < pojoInfo.primaryKeyNames.size(); i++) {
@@ -349,10 +770,54 @@ public class StandardSqlMaker implements SqlMaker {
 		return args;
 	}
 
+	/**
+	 * Returns a statement that deletes rowCount rows by primary key, that is,
+	 * "delete from t where id in (?,?,?)", or for composite keys, "delete from t
+	 * where (k1,k2) in ((?,?),(?,?))". The sql is cached per row count. The args
+	 * for each row are the same as getDeleteArgs().
+	 */
+	@Override
+	public String getMultiRowDeleteSql(Query query, Class<?> rowClass, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(rowClass);
+		if (pojoInfo.primaryKeyNames.size() == 0) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		String sql = pojoInfo.multiRowDeleteSql.get(rowCount);
+		if (sql == null) {
+			sql = makeMultiRowDeleteSql(pojoInfo, rowCount);
+			pojoInfo.multiRowDeleteSql.put(rowCount, sql);
+		}
+		return formatTable(SqlCache.Kind.DELETE, rowClass, pojoInfo, query, sql);
+	}
+
+	public String makeMultiRowDeleteSql(StandardPojoInfo pojoInfo, int rowCount) {
+		int numKeys = pojoInfo.primaryKeyNames.size();
+
+		String values;
+		StringBuilder buf = new StringBuilder();
+		buf.append("delete from %s where ");
+		if (numKeys == 1) {
+			buf.append(pojoInfo.primaryKeyNames.get(0));
+			values = "?";
+		} else {
+			buf.append('(').append(Util.join(pojoInfo.primaryKeyNames)).append(')');
+			values = "(" + Util.getQuestionMarks(numKeys) + ")";
+		}
+		buf.append(" in (");
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(values);
+		}
+		buf.append(')');
+		return buf.toString();
+	}
+
 	@Override
 	public String getUpsertSql(Query query, Object row) {
-		String msg = "There's no standard upsert implemention. There is one in the MySql driver, though,"
-				+ "so if you're using MySql, call Database.setSqlMaker(new MySqlMaker()); Or roll your own.";
+		String msg = "There's no standard upsert implemention. There are ones in the MySql and Postgres makers, though, "
+				+ "so call Database.setSqlMaker(new MySqlMaker()) or new PostgresMaker(); Or roll your own.";
 		throw new UnsupportedOperationException(msg);
 	}
 
@@ -361,4 +826,25 @@ public class StandardSqlMaker implements SqlMaker {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Returns true if the driver returns the generated keys of every row in an
+	 * upsert, whether it was inserted or updated. If so, upserts put the values
+	 * of @GeneratedValue columns back into the pojo, like inserts do.
+	 */
+	@Override
+	public boolean supportsUpsertGeneratedKeys() {
+		return false;
+	}
+
+	/**
+	 * Returns a statement that upserts rowCount rows. The args for each row are the
+	 * same as getInsertArgs(), with no duplication.
+	 */
+	@Override
+	public String getMultiRowUpsertSql(Query query, Class<?> rowClass, int rowCount) {
+		String msg = "There's no standard upsert implemention. There are ones in the MySql and Postgres makers, though, "
+				+ "so call Database.setSqlMaker(new MySqlMaker()) or new PostgresMaker(); Or roll your own.";
+		throw new UnsupportedOperationException(msg);
+	}
+
 }
\ No newline at end of file
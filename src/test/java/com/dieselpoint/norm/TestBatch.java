@@ -0,0 +1,183 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.sqlmakers.MySqlMaker;
+
+public class TestBatch {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists batchtest").execute();
+		db.createTable(Row.class);
+	}
+
+	private List<Row> makeRows(int count) {
+		List<Row> rows = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Row row = new Row();
+			row.name = "name" + i;
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Test
+	public void testInsertAll() {
+		List<Row> rows = makeRows(2500);
+
+		Query query = db.insertAll(rows);
+		assertEquals(2500, query.getRowsAffected());
+		assertEquals(2500, query.getBatchRowsAffected().length);
+
+		Long count = db.sql("select count(*) from batchtest").first(Long.class);
+		assertEquals(2500L, count.longValue());
+
+		// generated keys should have come back, one distinct key per row
+		Set<Long> ids = new HashSet<>();
+		for (Row row : rows) {
+			assertTrue(row.id > 0);
+			ids.add(row.id);
+		}
+		assertEquals(2500, ids.size());
+
+		Row last = db.where("id=?", rows.get(2499).id).first(Row.class);
+		assertEquals("name2499", last.name);
+	}
+
+	@Test
+	public void testInsertAllSmallBatches() {
+		List<Row> rows = makeRows(25);
+		db.table("batchtest").batchSize(10).fetchGeneratedKeys(false).insertAll(rows);
+
+		Long count = db.sql("select count(*) from batchtest").first(Long.class);
+		assertEquals(25L, count.longValue());
+		assertEquals(0, rows.get(0).id);
+	}
+
+	@Test
+	public void testMultiRowInsert() {
+		List<Row> rows = makeRows(2500);
+
+		// 999 + 999 rows (the parameter limit), then powers of two for the remainder
+		Query query = db.table("batchtest").multiRowInsert(true).insertAll(rows);
+		assertEquals(2500, query.getRowsAffected());
+
+		Long count = db.sql("select count(*) from batchtest").first(Long.class);
+		assertEquals(2500L, count.longValue());
+
+		Row last = db.where("id=?", rows.get(2499).id).first(Row.class);
+		assertEquals("name2499", last.name);
+	}
+
+	@Test
+	public void testMultiRowInsertSql() {
+		String sql = db.getSqlMaker().getMultiRowInsertSql(new Query(db), Row.class, 3);
+		assertEquals("insert into batchtest (name) values (?),(?),(?)", sql);
+	}
+
+	@Test
+	public void testUpdateAll() {
+		List<Row> rows = makeRows(50);
+		db.insertAll(rows);
+
+		for (Row row : rows) {
+			row.name = "updated";
+		}
+		Query query = db.table("batchtest").batchSize(20).updateAll(rows);
+		assertEquals(50, query.getRowsAffected());
+		for (int count : query.getBatchRowsAffected()) {
+			assertEquals(1, count);
+		}
+
+		Long count = db.sql("select count(*) from batchtest where name='updated'").first(Long.class);
+		assertEquals(50L, count.longValue());
+	}
+
+	@Test(expected = DbException.class)
+	public void testUpdateAllMissingKey() {
+		List<Row> rows = makeRows(5);
+		db.insertAll(rows);
+		rows.get(3).id = -1;
+		db.updateAll(rows);
+	}
+
+	@Test
+	public void testDeleteAll() {
+		List<Row> rows = makeRows(30);
+		db.insertAll(rows);
+
+		Query query = db.deleteAll(rows.subList(0, 10));
+		assertEquals(10, query.getRowsAffected());
+
+		query = db.table("batchtest").multiRowDelete(true).deleteAll(rows.subList(10, 25));
+		assertEquals(15, query.getRowsAffected());
+
+		Long count = db.sql("select count(*) from batchtest").first(Long.class);
+		assertEquals(5L, count.longValue());
+	}
+
+	@Test
+	public void testUpsertAllDuplicateKeys() {
+		Database mysql = new Database();
+		mysql.setJdbcUrl("jdbc:h2:mem:batchupsert;MODE=MySQL;DB_CLOSE_DELAY=-1;database_to_upper=false");
+		mysql.setSqlMaker(new MySqlMaker());
+		mysql.sql("drop table if exists batchupserttest").execute();
+		mysql.createTable(KeyedRow.class);
+
+		List<KeyedRow> rows = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			KeyedRow row = new KeyedRow();
+			row.id = i % 2;
+			row.name = "name" + i;
+			rows.add(row);
+		}
+		// the last row with each key wins
+		int[] counts = mysql.upsertAll(rows).getBatchRowsAffected();
+		assertEquals(4, counts.length);
+		assertEquals(0, counts[0]);
+		assertEquals(0, counts[1]);
+		assertTrue(counts[2] > 0);
+		assertTrue(counts[3] > 0);
+
+		List<KeyedRow> saved = mysql.orderBy("id").results(KeyedRow.class);
+		assertEquals(2, saved.size());
+		assertEquals("name2", saved.get(0).name);
+		assertEquals("name3", saved.get(1).name);
+		mysql.close();
+	}
+
+	@Table(name = "batchupserttest")
+	public static class KeyedRow {
+		@Id
+		public long id;
+		public String name;
+	}
+
+	@Table(name = "batchtest")
+	public static class Row {
+		@Id
+		@GeneratedValue
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.bulk.InsertBulkLoader;
+
+public class TestBulkLoad {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists bulktest").execute();
+		db.createTable(Row.class);
+	}
+
+	/**
+	 * Makes rows on demand, so the test never holds the whole dataset.
+	 */
+	private Iterator<Row> makeRows(int count) {
+		return new Iterator<Row>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < count;
+			}
+
+			@Override
+			public Row next() {
+				Row row = new Row();
+				row.name = "name" + i++;
+				return row;
+			}
+		};
+	}
+
+	@Test
+	public void testBulkLoad() {
+		assertEquals(InsertBulkLoader.class, db.getBulkLoader().getClass());
+
+		Query query = db.bulkLoad(Row.class, makeRows(10_000));
+		assertEquals(10_000, query.getRowsAffected());
+
+		Long count = db.sql("select count(*) from bulktest").first(Long.class);
+		assertEquals(10_000L, count.longValue());
+
+		Long named = db.sql("select count(*) from bulktest where name='name9999'").first(Long.class);
+		assertEquals(1L, named.longValue());
+	}
+
+	@Test
+	public void testBulkLoadRollback() {
+		Transaction trans = db.startTransaction();
+		db.transaction(trans).batchSize(100).bulkLoad(Row.class, makeRows(250));
+		trans.rollback();
+
+		Long count = db.sql("select count(*) from bulktest").first(Long.class);
+		assertEquals(0L, count.longValue());
+	}
+
+	@Table(name = "bulktest")
+	public static class Row {
+		@Id
+		@GeneratedValue
+		public long id;
+		public String name;
+	}
+
+}
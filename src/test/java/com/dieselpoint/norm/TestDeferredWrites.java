@@ -0,0 +1,184 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.sqlmakers.MySqlMaker;
+
+public class TestDeferredWrites {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists deferredtest").execute();
+		db.createTable(Row.class);
+	}
+
+	private long count(Transaction trans) {
+		Query query = trans == null ? db.sql("select count(*) from deferredtest")
+				: db.transaction(trans).sql("select count(*) from deferredtest");
+		return query.first(Long.class);
+	}
+
+	@Test
+	public void testCommit() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+
+		List<Row> rows = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Row row = new Row();
+			row.name = "name" + i;
+			db.transaction(trans).insert(row);
+			rows.add(row);
+		}
+		assertEquals(0L, count(null));
+
+		// a query in the transaction sends the pending writes first, and the keys come back
+		assertEquals(100L, count(trans));
+		for (Row row : rows) {
+			assertTrue(row.id > 0);
+		}
+
+		for (int i = 0; i < 10; i++) {
+			rows.get(i).name = "updated";
+			db.transaction(trans).update(rows.get(i));
+		}
+		db.transaction(trans).delete(rows.get(99));
+		trans.commit();
+
+		assertEquals(99L, count(null));
+		Long updated = db.sql("select count(*) from deferredtest where name='updated'").first(Long.class);
+		assertEquals(10L, updated.longValue());
+	}
+
+	@Test
+	public void testSameTableOrder() {
+		Row row = new Row();
+		row.name = "first";
+		db.insert(row);
+
+		// the delete must not be moved ahead of the update
+		Transaction trans = db.startTransaction().deferWrites(true);
+		row.name = "second";
+		db.transaction(trans).update(row);
+		db.transaction(trans).delete(row);
+		trans.commit();
+
+		assertEquals(0L, count(null));
+	}
+
+	@Test
+	public void testRawSqlAfterDeferred() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+		Row row = new Row();
+		row.name = "inserted";
+		db.transaction(trans).insert(row);
+		Query update = db.transaction(trans).sql("update deferredtest set name=? where name=?", "updated",
+				"inserted");
+		assertEquals(1, update.execute().getRowsAffected());
+		trans.commit();
+
+		assertEquals("updated", db.first(Row.class).name);
+	}
+
+	@Test
+	public void testBatchAfterDeferred() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+		List<Row> rows = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Row row = new Row();
+			row.name = "name" + i;
+			db.transaction(trans).insert(row);
+			rows.add(row);
+		}
+		// the deletes need the keys from the deferred inserts
+		assertEquals(2, db.transaction(trans).deleteAll(rows.subList(0, 2)).getRowsAffected());
+		trans.commit();
+
+		assertEquals(1L, count(null));
+	}
+
+	@Test
+	public void testUpsertAfterDeferred() {
+		Database mysql = new Database();
+		mysql.setJdbcUrl("jdbc:h2:mem:deferredupsert;MODE=MySQL;DB_CLOSE_DELAY=-1;database_to_upper=false");
+		mysql.setSqlMaker(new MySqlMaker());
+		mysql.sql("drop table if exists deferredupserttest").execute();
+		mysql.createTable(KeyedRow.class);
+
+		Transaction trans = mysql.startTransaction().deferWrites(true);
+		KeyedRow row = new KeyedRow();
+		row.id = 7;
+		row.name = "inserted";
+		mysql.transaction(trans).insert(row);
+		row.name = "upserted";
+		mysql.transaction(trans).upsert(row);
+		trans.commit();
+
+		List<KeyedRow> rows = mysql.results(KeyedRow.class);
+		assertEquals(1, rows.size());
+		assertEquals("upserted", rows.get(0).name);
+		mysql.close();
+	}
+
+	@Test
+	public void testSelectAfterDeferred() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+		Row row = new Row();
+		row.name = "visible";
+		db.transaction(trans).insert(row);
+		assertEquals("visible", db.transaction(trans).first(Row.class).name);
+		trans.commit();
+	}
+
+	@Test
+	public void testRollback() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+		Row row = new Row();
+		row.name = "rolled back";
+		db.transaction(trans).insert(row);
+		trans.rollback();
+
+		assertEquals(0L, count(null));
+	}
+
+	@Test(expected = DbException.class)
+	public void testCommitFails() {
+		Transaction trans = db.startTransaction().deferWrites(true);
+		Row row = new Row();
+		row.id = 12345;
+		row.name = "missing";
+		db.transaction(trans).update(row);
+		trans.commit();
+	}
+
+	@Table(name = "deferredupserttest")
+	public static class KeyedRow {
+		@Id
+		public long id;
+		public String name;
+	}
+
+	@Table(name = "deferredtest")
+	public static class Row {
+		@Id
+		@GeneratedValue
+		public long id;
+		public String name;
+	}
+
+}
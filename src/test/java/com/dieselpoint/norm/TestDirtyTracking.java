@@ -0,0 +1,86 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDirtyTracking {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.setDirtyTracking(true);
+		db.sql("drop table if exists dirtytest").execute();
+		db.sql("create table dirtytest (id bigint primary key, body varchar(255), counter integer, data varbinary(100))")
+				.execute();
+
+		Row row = new Row();
+		row.id = 1;
+		row.counter = 10;
+		row.body = "a long body";
+		row.data = new byte[] { 1, 2, 3 };
+		db.insert(row);
+	}
+
+	@Test
+	public void testChangedColumnsOnly() {
+		Row row = db.where("id=?", 1).first(Row.class);
+		row.counter++;
+
+		Query query = db.update(row);
+		assertEquals(1, query.getRowsAffected());
+		assertEquals("update dirtytest set counter=? where id=?", query.getSql());
+
+		// a column that wasn't changed isn't overwritten
+		db.sql("update dirtytest set body='changed elsewhere' where id=1").execute();
+		row.counter++;
+		db.update(row);
+
+		Row reloaded = db.where("id=?", 1).first(Row.class);
+		assertEquals(12, reloaded.counter);
+		assertEquals("changed elsewhere", reloaded.body);
+	}
+
+	@Test
+	public void testNothingChanged() {
+		Row row = db.where("id=?", 1).first(Row.class);
+		row.data[0] = 1; // same value
+
+		Query query = db.update(row);
+		assertEquals(0, query.getRowsAffected());
+		assertNull(query.getSql());
+
+		// the snapshot is a copy, so changing the array in place is seen
+		row.data[0] = 9;
+		query = db.update(row);
+		assertEquals("update dirtytest set data=? where id=?", query.getSql());
+	}
+
+	@Test
+	public void testUntrackedRow() {
+		Row row = new Row();
+		row.id = 1;
+		row.counter = 5;
+		Query query = db.update(row);
+		assertEquals("update dirtytest set body=?,counter=?,data=? where id=?", query.getSql());
+	}
+
+	@Table(name = "dirtytest")
+	public static class Row {
+		@Id
+		public long id;
+		public String body;
+		public int counter;
+		public byte[] data;
+	}
+
+}
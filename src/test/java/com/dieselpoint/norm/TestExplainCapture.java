@@ -0,0 +1,109 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.latency.DbLatencyWarning;
+
+public class TestExplainCapture {
+
+	private Database db;
+	private BlockingQueue<DbLatencyWarning> warnings = new LinkedBlockingQueue<>();
+	private BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists explaintest").execute();
+		db.sql("create table explaintest (id int primary key, name varchar(20))").execute();
+		db.addLatencyAlerter(warning -> {
+			threads.add(Thread.currentThread());
+			warnings.add(warning);
+		});
+		db.setExplainCapture(true);
+	}
+
+	@After
+	public void tearDown() {
+		db.setExplainCapture(false);
+	}
+
+	@Test
+	public void testCapture() throws InterruptedException {
+		db.getExplainCapture().setMinIntervalMillis(60_000);
+
+		DbLatencyWarning slow = new DbLatencyWarning(10, 50, "select * from explaintest where id=?",
+				new Object[] { 1 });
+		db.alertLatency(slow);
+		DbLatencyWarning received = warnings.poll(10, TimeUnit.SECONDS);
+		assertSame(slow, received);
+		assertNotSame(Thread.currentThread(), threads.poll());
+		assertNotNull(received.getPlan());
+		assertTrue(received.getPlan().toLowerCase().contains("explaintest"));
+		assertTrue(received.toString().contains("Plan:"));
+
+		// rate limited, so this one is alerted right away without a plan
+		DbLatencyWarning second = new DbLatencyWarning(10, 50, "select * from explaintest", null);
+		db.alertLatency(second);
+		assertSame(second, warnings.poll());
+		assertSame(Thread.currentThread(), threads.poll());
+		assertNull(second.getPlan());
+	}
+
+	@Test
+	public void testBadSql() throws InterruptedException {
+		DbLatencyWarning slow = new DbLatencyWarning(10, 50, "drop table nosuchtable", null);
+		db.alertLatency(slow);
+		assertSame(slow, warnings.poll(10, TimeUnit.SECONDS));
+		assertNull(slow.getPlan());
+	}
+
+	@Test
+	public void testUnexplainable() throws InterruptedException {
+		db.getExplainCapture().setMinIntervalMillis(60_000);
+
+		// batch sql without args, and COPY, are alerted right away without a plan
+		DbLatencyWarning batch = new DbLatencyWarning(10, 50, "insert into explaintest (id, name) values (?, ?)", null);
+		db.alertLatency(batch);
+		assertSame(batch, warnings.poll());
+		assertSame(Thread.currentThread(), threads.poll());
+		assertNull(batch.getPlan());
+
+		DbLatencyWarning copy = new DbLatencyWarning(10, 50, "copy explaintest (id, name) from stdin", null);
+		db.alertLatency(copy);
+		assertSame(copy, warnings.poll());
+		assertNull(copy.getPlan());
+
+		// and they don't use up the rate limit
+		DbLatencyWarning slow = new DbLatencyWarning(10, 50, "insert into explaintest (id, name) values (?, ?)",
+				new Object[] { 1, "bob" });
+		db.alertLatency(slow);
+		assertSame(slow, warnings.poll(10, TimeUnit.SECONDS));
+		assertNotNull(slow.getPlan());
+	}
+
+	@Test
+	public void testFromQuery() throws InterruptedException {
+		db.sql("select * from explaintest where name=?", "bob").maxLatency(0).results(HashMap.class);
+		// maxLatency of 0 logs everything, so no plans are captured
+		DbLatencyWarning logged = warnings.poll(10, TimeUnit.SECONDS);
+		assertEquals("select * from explaintest where name=?", logged.sql);
+		assertNull(logged.getPlan());
+	}
+
+}
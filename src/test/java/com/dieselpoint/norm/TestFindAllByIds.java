@@ -0,0 +1,114 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFindAllByIds {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists findallbyidstest").execute();
+		db.createTable(Row.class);
+		db.sql("drop table if exists findallbyidspairtest").execute();
+		db.createTable(Pair.class);
+
+		List<Row> rows = new ArrayList<>();
+		List<Pair> pairs = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			rows.add(row);
+
+			Pair pair = new Pair();
+			pair.a = "a" + (i % 10);
+			pair.b = i;
+			pair.label = "label" + i;
+			pairs.add(pair);
+		}
+		db.insertAll(rows);
+		db.insertAll(pairs);
+	}
+
+	@Test
+	public void testSingleKey() {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 1200; i > 0; i -= 3) {
+			ids.add(i);
+		}
+		Map<Object, Row> found = new Query(db).batchSize(50).findAllByIds(Row.class, ids);
+		assertEquals(333, found.size());
+		assertEquals("name999", found.get(999).name);
+		assertFalse(found.containsKey(1200));
+
+		// in the order the ids were given
+		assertEquals(Integer.valueOf(999), found.keySet().iterator().next());
+	}
+
+	@Test
+	public void testParallel() {
+		List<Long> ids = new ArrayList<>();
+		for (long i = 1; i <= 1000; i++) {
+			ids.add(i);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Map<Object, Row> found = new Query(db).batchSize(64).findAllByIds(Row.class, ids, pool);
+			assertEquals(1000, found.size());
+			assertEquals("name500", found.get(500L).name);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCompositeKey() {
+		List<Object> ids = new ArrayList<>();
+		ids.add(Arrays.asList("a1", 1));
+		ids.add(new Object[] { "a2", 2 });
+		ids.add(Arrays.asList("a3", 4)); // no such row
+		ids.add(Arrays.asList("a5", 5));
+
+		Map<Object, Pair> found = db.findAllByIds(Pair.class, ids);
+		assertEquals(3, found.size());
+		assertEquals("label1", found.get(ids.get(0)).label);
+		assertEquals("label2", found.get(ids.get(1)).label);
+		assertTrue(found.containsKey(ids.get(3)));
+	}
+
+	@Table(name = "findallbyidstest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+	@Table(name = "findallbyidspairtest")
+	public static class Pair {
+		@Id
+		public String a;
+		@Id
+		public int b;
+		public String label;
+	}
+
+}
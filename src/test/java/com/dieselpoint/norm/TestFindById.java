@@ -0,0 +1,199 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.cache.LruRowCache;
+
+public class TestFindById {
+
+	private Database db;
+	private LruRowCache cache;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists findbyidtest").execute();
+		db.createTable(Row.class);
+		db.sql("drop table if exists findbyidpairtest").execute();
+		db.createTable(Pair.class);
+
+		for (int i = 1; i <= 3; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			db.insert(row);
+		}
+
+		cache = new LruRowCache(100);
+		db.setRowCache(cache);
+	}
+
+	@Test
+	public void testCached() {
+		Row first = db.findById(Row.class, 1);
+		assertEquals("name1", first.name);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// from the cache, even though the database has changed behind its back
+		db.sql("update findbyidtest set name='changed' where id=1").execute();
+		Row second = db.findById(Row.class, 1L);
+		assertNotSame(first, second);
+		assertEquals(1, second.id);
+		assertEquals("name1", second.name);
+		assertEquals(1, cache.getHits());
+		assertEquals(0.5, cache.getHitRate(), 0.001);
+
+		assertNull(db.findById(Row.class, 99));
+	}
+
+	@Test
+	public void testInvalidation() {
+		Row row = db.findById(Row.class, 1);
+		row.name = "updated";
+		db.update(row);
+		assertEquals("updated", db.findById(Row.class, 1).name);
+
+		db.findById(Row.class, 2);
+		Row two = new Row();
+		two.id = 2;
+		two.name = "batch";
+		Row three = db.findById(Row.class, 3);
+		three.name = "batch";
+		db.updateAll(Arrays.asList(two, three));
+		assertEquals("batch", db.findById(Row.class, 2).name);
+		assertEquals("batch", db.findById(Row.class, 3).name);
+
+		db.delete(row);
+		assertNull(db.findById(Row.class, 1));
+		assertEquals(2, cache.size());
+
+		db.deleteAll(Arrays.asList(two, three));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testTransaction() {
+		Row row = db.findById(Row.class, 1);
+
+		Transaction trans = db.startTransaction();
+		row.name = "in transaction";
+		db.transaction(trans).update(row);
+		// another reader caches the committed value before the commit
+		assertEquals("name1", db.findById(Row.class, 1).name);
+		trans.commit();
+
+		assertEquals("in transaction", db.findById(Row.class, 1).name);
+	}
+
+	@Test
+	public void testCompositeKey() {
+		Pair pair = new Pair();
+		pair.a = "x";
+		pair.b = 7;
+		pair.label = "first";
+		db.insert(pair);
+
+		assertEquals("first", db.findById(Pair.class, "x", 7).label);
+		pair.label = "second";
+		db.update(pair);
+		assertEquals("second", db.findById(Pair.class, "x", 7).label);
+
+		try {
+			db.findById(Pair.class, "x");
+			fail();
+		} catch (DbException e) {
+			// expected, wrong number of keys
+		}
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		db.setRowCache(new LruRowCache(1, 50));
+		db.findById(Row.class, 1);
+		db.sql("update findbyidtest set name='changed' where id=1").execute();
+		Thread.sleep(100);
+		assertEquals("changed", db.findById(Row.class, 1).name);
+
+		// evicted by size
+		LruRowCache small = (LruRowCache) db.getRowCache();
+		db.findById(Row.class, 2);
+		assertEquals(1, small.size());
+	}
+
+	@Test
+	public void testInvalidatedDuringRead() {
+		// update and invalidate the row after the select has run, but before
+		// findById() caches what it read
+		boolean[] armed = { true };
+		db.setMaxLatency(0);
+		db.addLatencyAlerter(warning -> {
+			if (armed[0] && warning.sql.startsWith("select")) {
+				armed[0] = false;
+				Row row = new Row();
+				row.id = 1;
+				row.name = "fresh";
+				db.update(row);
+			}
+		});
+		db.findById(Row.class, 1);
+		assertEquals(0, cache.size());
+		assertEquals("fresh", db.findById(Row.class, 1).name);
+	}
+
+	@Test
+	public void testMutableValuesCopied() {
+		db.sql("drop table if exists findbyiddatetest").execute();
+		db.createTable(Dated.class);
+		Dated dated = new Dated();
+		dated.id = 1;
+		dated.created = new Date(1000);
+		db.insert(dated);
+
+		Dated first = db.findById(Dated.class, 1);
+		first.created.setTime(2000);
+		Dated second = db.findById(Dated.class, 1);
+		assertEquals(1000, second.created.getTime());
+		assertNotSame(first.created, second.created);
+		second.created.setTime(3000);
+		assertEquals(1000, db.findById(Dated.class, 1).created.getTime());
+	}
+
+	@Table(name = "findbyiddatetest")
+	public static class Dated {
+		@Id
+		public long id;
+		public Date created;
+	}
+
+	@Table(name = "findbyidtest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+	@Table(name = "findbyidpairtest")
+	public static class Pair {
+		@Id
+		public String a;
+		@Id
+		public int b;
+		public String label;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIdentityMap {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists identitymaptest").execute();
+		db.createTable(Row.class);
+		for (int i = 1; i <= 3; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			db.insert(row);
+		}
+	}
+
+	@Test
+	public void testSameInstance() {
+		Transaction trans = db.startTransaction().identityMap(true);
+
+		Row first = db.transaction(trans).findById(Row.class, 1);
+		db.sql("update identitymaptest set name='changed' where id=1").execute();
+		Row second = db.transaction(trans).findById(Row.class, 1L);
+		assertSame(first, second);
+		assertEquals("name1", second.name);
+
+		List<Row> rows = db.transaction(trans).where("id < ?", 3).orderBy("id").results(Row.class);
+		assertSame(first, rows.get(0));
+		assertSame(rows.get(1), db.transaction(trans).findById(Row.class, 2));
+
+		// rows from hand-written sql are left alone
+		Row fromSql = db.transaction(trans).sql("select id from identitymaptest where id=1").first(Row.class);
+		assertNotSame(first, fromSql);
+
+		trans.commit();
+
+		Transaction next = db.startTransaction().identityMap(true);
+		Row third = db.transaction(next).findById(Row.class, 1);
+		assertNotSame(first, third);
+		assertEquals("changed", third.name);
+		next.rollback();
+	}
+
+	@Test
+	public void testWrites() {
+		Transaction trans = db.startTransaction().identityMap(true);
+
+		Row row = new Row();
+		row.id = 10;
+		row.name = "inserted";
+		db.transaction(trans).insert(row);
+		assertSame(row, db.transaction(trans).findById(Row.class, 10));
+
+		db.transaction(trans).delete(row);
+		assertNull(db.transaction(trans).findById(Row.class, 10));
+
+		Row replacement = new Row();
+		replacement.id = 2;
+		replacement.name = "updated";
+		db.transaction(trans).update(replacement);
+		assertSame(replacement, db.transaction(trans).findById(Row.class, 2));
+
+		trans.rollback();
+		assertEquals("name2", db.findById(Row.class, 2).name);
+	}
+
+	@Test
+	public void testOff() {
+		Transaction trans = db.startTransaction();
+		Row first = db.transaction(trans).findById(Row.class, 1);
+		assertNotSame(first, db.transaction(trans).findById(Row.class, 1));
+		trans.commit();
+	}
+
+	@Table(name = "identitymaptest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestInList {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists inlisttest").execute();
+		db.createTable(Row.class);
+
+		List<Row> rows = new ArrayList<>();
+		for (int i = 1; i <= 20; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			rows.add(row);
+		}
+		db.insertAll(rows);
+	}
+
+	@Test
+	public void testSelect() {
+		List<Row> rows = db.where("id in (?) and name <> ?", Arrays.asList(3L, 5L, 7L), "name5").orderBy("id")
+				.results(Row.class);
+		assertEquals(2, rows.size());
+		assertEquals(3, rows.get(0).id);
+		assertEquals(7, rows.get(1).id);
+
+		// padded to the same bucket, so the same sql
+		Query q3 = db.where("id in (?)", Arrays.asList(1L, 2L, 3L));
+		Query q4 = db.where("id in (?)", Arrays.asList(1L, 2L, 3L, 4L));
+		assertEquals(q3.getWhere(), q4.getWhere());
+		assertEquals(3, q3.results(Row.class).size());
+		assertEquals(4, q4.results(Row.class).size());
+
+		assertEquals(17L, db.where("id not in (?)", Arrays.asList(1L, 2L, 3L)).count(Row.class).longValue());
+		assertEquals(0, db.where("id in (?)", Collections.emptyList()).results(Row.class).size());
+		assertEquals(20, db.where("id not in (?)", Collections.emptyList()).results(Row.class).size());
+		assertEquals(20L, db.where("name <> ? and id not in (?)", "x", Collections.emptyList()).count(Row.class)
+				.longValue());
+	}
+
+	@Test
+	public void testDelete() {
+		db.table("inlisttest").where("id in (?)", Arrays.asList(1L, 2L, 3L, 4L, 5L)).delete();
+		assertEquals(15L, db.sql("select count(*) from inlisttest").first(Long.class).longValue());
+	}
+
+	@Table(name = "inlisttest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+public class TestNumericWidening {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists wideningtest").execute();
+		// int columns mapped to long properties
+		db.sql("create table wideningtest (id int auto_increment primary key, count int, total int)").execute();
+	}
+
+	@Test
+	public void testIntIntoLong() {
+		Row row = new Row();
+		row.count = 3;
+		row.setTotal(7);
+		db.insert(row);
+		assertEquals(1L, row.id);
+
+		List<Row> rows = db.results(Row.class);
+		assertEquals(1, rows.size());
+		assertEquals(1L, rows.get(0).id);
+		assertEquals(3L, rows.get(0).count);
+		assertEquals(7L, rows.get(0).getTotal());
+	}
+
+	@Test
+	public void testPutValue() {
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) db.getSqlMaker().getPojoInfo(Row.class);
+		Row row = new Row();
+		pojoInfo.putValue(row, "count", Integer.valueOf(5));
+		pojoInfo.putValue(row, "total", Short.valueOf((short) 6));
+		assertEquals(5L, row.count);
+		assertEquals(6L, row.getTotal());
+	}
+
+	@Test
+	public void testNullIntoPrimitive() {
+		db.sql("insert into wideningtest (count, total) values (null, 1)").execute();
+		try {
+			db.results(Row.class);
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testNarrowingFails() {
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) db.getSqlMaker().getPojoInfo(Narrow.class);
+		Narrow narrow = new Narrow();
+		assertFails(() -> pojoInfo.putValue(narrow, "small", Long.valueOf(1L << 32)));
+		assertFails(() -> pojoInfo.putValue(narrow, "small", Double.valueOf(1.9)));
+		assertFails(() -> pojoInfo.putValue(narrow, "big", new BigDecimal("1.9")));
+		assertFails(() -> pojoInfo.putValue(narrow, "big", Float.valueOf(2)));
+		assertEquals(0, narrow.small);
+		assertEquals(0L, narrow.big);
+
+		pojoInfo.putValue(narrow, "real", Long.valueOf(3));
+		assertEquals(3.0, narrow.real, 0);
+	}
+
+	private static void assertFails(Runnable runnable) {
+		try {
+			runnable.run();
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	public static class Narrow {
+		public int small;
+		public long big;
+		public double real;
+	}
+
+	@Table(name = "wideningtest")
+	public static class Row {
+		@Id
+		@GeneratedValue
+		public long id;
+		public long count;
+		private long total;
+
+		public long getTotal() {
+			return total;
+		}
+
+		public void setTotal(long total) {
+			this.total = total;
+		}
+	}
+
+}
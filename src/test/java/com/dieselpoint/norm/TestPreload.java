@@ -0,0 +1,69 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.sqlmakers.MySqlMaker;
+import com.dieselpoint.norm.sqlmakers.PostgresMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+public class TestPreload {
+
+	@Test
+	public void testPreloadPackage() {
+		Database db = new Database();
+		List<Class<?>> classes = db.preloadPackage("com.dieselpoint.norm");
+		assertTrue(classes.contains(TestBatch.Row.class));
+		assertTrue(classes.contains(TestBulkLoad.Row.class));
+		for (Class<?> clazz : classes) {
+			assertTrue(clazz.isAnnotationPresent(jakarta.persistence.Table.class));
+		}
+	}
+
+	@Test
+	public void testPerMaker() {
+		StandardPojoInfo mysql = new MySqlMaker().getPojoInfo(TestBatch.Row.class);
+		StandardPojoInfo postgres = new PostgresMaker().getPojoInfo(TestBatch.Row.class);
+		assertNotSame(mysql, postgres);
+		assertTrue(mysql.upsertSql.contains("on duplicate key update"));
+		assertTrue(postgres.upsertSql.contains("on conflict"));
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		StandardSqlMaker maker = new StandardSqlMaker();
+		ConcurrentHashMap<StandardPojoInfo, Boolean> seen = new ConcurrentHashMap<>();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			pool.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				seen.put(maker.getPojoInfo(TestDirtyTracking.Row.class), true);
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(1, seen.size());
+		assertSame(seen.keySet().iterator().next(), maker.getPojoInfo(TestDirtyTracking.Row.class));
+	}
+
+}
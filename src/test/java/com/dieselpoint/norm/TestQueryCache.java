@@ -0,0 +1,164 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.cache.QueryCache;
+
+public class TestQueryCache {
+
+	private Database db;
+	private Database other; // writes through here aren't seen by db's cache
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		other = new Database();
+		db.sql("drop table if exists querycachetest").execute();
+		db.createTable(Row.class);
+		for (int i = 1; i <= 5; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			db.insert(row);
+		}
+	}
+
+	private List<Row> query() {
+		return db.where("id < ?", 4).orderBy("id").cached(Duration.ofMinutes(1)).results(Row.class);
+	}
+
+	@Test
+	public void testCached() {
+		List<Row> first = query();
+		assertEquals(3, first.size());
+
+		other.sql("update querycachetest set name='changed' where id=1").execute();
+		List<Row> second = query();
+		assertSame(first, second);
+		assertEquals("name1", second.get(0).name);
+		assertEquals(1, db.getQueryCache().getHits());
+
+		// different args, different entry
+		assertEquals(4, db.where("id < ?", 5).cached(Duration.ofMinutes(1)).results(Row.class).size());
+
+		Long count = new Query(db).cached(Duration.ofMinutes(1)).count(Row.class);
+		other.sql("delete from querycachetest where id=5").execute();
+		assertEquals(count, new Query(db).cached(Duration.ofMinutes(1)).count(Row.class));
+	}
+
+	@Test
+	public void testInvalidation() {
+		query();
+		other.sql("update querycachetest set name='changed' where id=1").execute();
+
+		Row row = new Row();
+		row.id = 10;
+		row.name = "new";
+		db.insert(row);
+		assertEquals("changed", query().get(0).name);
+
+		query();
+		Row two = db.where("id=?", 2).first(Row.class);
+		two.name = "updated";
+		db.update(two);
+		assertEquals("updated", query().get(1).name);
+
+		query();
+		db.delete(two);
+		assertEquals(2, query().size());
+
+		query();
+		db.table("querycachetest").where("id=?", 3).delete();
+		assertEquals(1, query().size());
+
+		// raw sql without a table clears everything
+		query();
+		db.sql("insert into querycachetest (id, name) values (2, 'raw')").execute();
+		assertEquals(2, query().size());
+	}
+
+	@Test
+	public void testTransaction() {
+		query();
+		Transaction trans = db.startTransaction();
+		Row row = new Row();
+		row.id = 0;
+		row.name = "zero";
+		db.transaction(trans).insert(row);
+		// another reader caches the committed rows before the commit
+		assertEquals(3, query().size());
+		trans.commit();
+		assertEquals(4, query().size());
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		QueryCache cache = new QueryCache(1000);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		Future<?>[] futures = new Future<?>[8];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = pool.submit(() -> {
+				start.await();
+				return cache.get("t", "select 1", Row.class, new Object[] { 1 }, 60_000, () -> {
+					loads.incrementAndGet();
+					try {
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					return Arrays.asList(new Row());
+				});
+			});
+		}
+		start.countDown();
+		Object result = futures[0].get();
+		for (Future<?> f : futures) {
+			assertSame(result, f.get());
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testBounded() {
+		QueryCache cache = new QueryCache(100);
+		for (int i = 0; i < 50; i++) {
+			cache.get("t", "select", Row.class, new Object[] { i }, 60_000,
+					() -> Arrays.asList(new Row(), new Row(), new Row()));
+		}
+		assertTrue(cache.getRowCount() <= 100);
+		assertTrue(cache.size() > 0);
+	}
+
+	@Table(name = "querycachetest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestReplicas {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		load(db, "primary");
+		db.addReplica(replica("replica1"));
+		db.addReplica(replica("replica2"));
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	private static void load(Database target, String name) {
+		target.sql("drop table if exists replicatest").execute();
+		target.createTable(Row.class);
+		Row row = new Row();
+		row.id = 1;
+		row.source = name;
+		target.insert(row);
+	}
+
+	private static JdbcDataSource replica(String name) {
+		String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;database_to_upper=false";
+		Database replica = new Database();
+		replica.setJdbcUrl(url);
+		load(replica, name);
+		replica.close();
+
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setURL(url);
+		ds.setUser(System.getProperty("norm.user"));
+		ds.setPassword(System.getProperty("norm.password"));
+		return ds;
+	}
+
+	private String read() {
+		return db.first(Row.class).source;
+	}
+
+	@Test
+	public void testRoundRobin() {
+		assertEquals("replica1", read());
+		assertEquals("replica2", read());
+		assertEquals("replica1", read());
+		assertEquals(1L, (long) db.sql("select count(*) from replicatest").first(Long.class));
+	}
+
+	@Test
+	public void testPrimary() {
+		assertEquals("primary", new Query(db).primary().first(Row.class).source);
+
+		Transaction trans = db.startTransaction();
+		try {
+			assertEquals("primary", db.transaction(trans).first(Row.class).source);
+		} finally {
+			trans.rollback();
+		}
+
+		// writes never go to a replica
+		db.sql("update replicatest set source=?", "updated").execute();
+		assertEquals("updated", new Query(db).primary().first(Row.class).source);
+		assertEquals("replica1", read());
+	}
+
+	@Test
+	public void testFindAllByIdsPrimary() {
+		List<Long> ids = Arrays.asList(1L);
+		assertEquals("primary", new Query(db).primary().findAllByIds(Row.class, ids).get(1L).source);
+		assertEquals("replica1", db.findAllByIds(Row.class, ids).get(1L).source);
+	}
+
+	@Test
+	public void testReadYourWrites() throws InterruptedException {
+		db.setReadYourWritesMillis(200);
+		assertEquals("replica1", read());
+
+		db.sql("update replicatest set source=?", "written").execute();
+		assertEquals("written", read());
+
+		// other threads aren't affected
+		String[] other = new String[1];
+		Thread thread = new Thread(() -> other[0] = read());
+		thread.start();
+		thread.join();
+		assertEquals("replica2", other[0]);
+
+		Thread.sleep(250);
+		assertEquals("replica1", read());
+	}
+
+	@Test
+	public void testReadOnlyTransaction() {
+		db.setReadYourWritesMillis(60_000);
+
+		Transaction trans = db.startTransaction();
+		assertEquals("primary", db.transaction(trans).first(Row.class).source);
+		trans.commit();
+		// nothing was written, so reads still go to the replicas
+		assertEquals("replica1", read());
+
+		trans = db.startTransaction();
+		db.transaction(trans).sql("update replicatest set source=?", "written").execute();
+		trans.commit();
+		assertEquals("written", read());
+	}
+
+	@Test
+	public void testLeastInFlight() throws Exception {
+		db.setReplicaSelection(ReplicaSelection.LEAST_IN_FLIGHT);
+		assertEquals("replica1", read());
+		assertEquals("replica1", read());
+
+		try (Connection held = db.getReadConnection()) {
+			assertEquals(1, db.replicas.getInFlight(0));
+			assertEquals("replica2", read());
+		}
+		assertEquals(0, db.replicas.getInFlight(0));
+
+		try (ResultIterator<Row> it = db.iterate(Row.class)) {
+			assertEquals("replica2", read());
+			assertEquals("replica1", it.next().source);
+		}
+		assertEquals(0, db.replicas.getInFlight(0));
+		assertEquals(0, db.replicas.getInFlight(1));
+	}
+
+	@Table(name = "replicatest")
+	public static class Row {
+		@Id
+		public long id;
+		public String source;
+	}
+
+}
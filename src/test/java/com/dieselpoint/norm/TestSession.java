@@ -0,0 +1,144 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSession {
+
+	private final AtomicInteger checkouts = new AtomicInteger();
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database() {
+			@Override
+			Connection openConnection() {
+				checkouts.incrementAndGet();
+				return super.openConnection();
+			}
+		};
+		db.sql("drop table if exists sessiontest").execute();
+		db.createTable(Row.class);
+		checkouts.set(0);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testOneConnection() throws Exception {
+		Connection con;
+		try (Session session = db.session()) {
+			assertEquals(0, checkouts.get());
+
+			List<Row> rows = new ArrayList<>();
+			for (int i = 1; i <= 3; i++) {
+				Row row = new Row();
+				row.id = i;
+				row.name = "name" + i;
+				db.insert(row);
+				rows.add(row);
+			}
+			rows.get(0).name = "changed";
+			db.updateAll(rows);
+			assertEquals(3L, (long) db.sql("select count(*) from sessiontest").first(Long.class));
+			assertEquals("changed", db.where("id=?", 1).first(Row.class).name);
+			try (ResultIterator<Row> it = db.orderBy("id").iterate(Row.class)) {
+				assertEquals(1L, it.next().id);
+				assertEquals(3, db.results(Row.class).size());
+			}
+
+			con = session.getConnection();
+			assertTrue(con.getAutoCommit());
+			assertFalse(con.isClosed());
+			assertEquals(1, checkouts.get());
+		}
+		assertTrue(con.isClosed());
+
+		db.results(Row.class);
+		assertEquals(2, checkouts.get());
+	}
+
+	@Test
+	public void testNested() {
+		try (Session outer = db.session()) {
+			try (Session inner = db.session()) {
+				assertTrue(inner.isNested());
+				db.results(Row.class);
+			}
+			db.results(Row.class);
+			assertEquals(1, checkouts.get());
+		}
+
+		try (Session session = db.session()) {
+			assertFalse(session.isNested());
+		}
+	}
+
+	@Test
+	public void testTransactionGetsItsOwnConnection() {
+		try (Session session = db.session()) {
+			Row row = new Row();
+			row.id = 1;
+			row.name = "outside";
+			db.insert(row);
+
+			Transaction trans = db.startTransaction();
+			row.name = "inside";
+			db.transaction(trans).update(row);
+			trans.rollback();
+
+			assertEquals("outside", db.where("id=?", 1).first(Row.class).name);
+			assertEquals(2, checkouts.get());
+		}
+	}
+
+	@Test
+	public void testOtherThreads() throws InterruptedException {
+		try (Session session = db.session()) {
+			db.results(Row.class);
+			Thread thread = new Thread(() -> db.results(Row.class));
+			thread.start();
+			thread.join();
+			assertEquals(2, checkouts.get());
+		}
+	}
+
+	@Test
+	public void testClosed() {
+		Session session = db.session();
+		session.close();
+		try {
+			session.getConnection();
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	@Table(name = "sessiontest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.cache.StatementCachingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class TestStatementCache {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.setMaxPoolSize(1);
+		db.setStatementCacheSize(4);
+		db.sql("drop table if exists stmtcachetest").execute();
+		db.createTable(Row.class);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void testHits() {
+		StatementCachingDataSource cache = db.getStatementCache();
+		long misses = cache.getMisses();
+
+		for (int i = 0; i < 10; i++) {
+			Row row = new Row();
+			row.name = "name" + i;
+			db.insert(row);
+			assertTrue(row.id > 0);
+		}
+		for (int i = 0; i < 10; i++) {
+			Row row = db.where("name=?", "name" + i).first(Row.class);
+			assertEquals("name" + i, row.name);
+		}
+
+		// one insert statement and one select, each prepared once
+		assertEquals(misses + 2, cache.getMisses());
+		assertTrue(cache.getHits() >= 18);
+	}
+
+	@Test
+	public void testInUse() {
+		for (int i = 0; i < 3; i++) {
+			Row row = new Row();
+			row.name = "name" + i;
+			db.insert(row);
+		}
+
+		// the same sql on the same connection while the first statement is still
+		// open gets its own statement
+		Transaction trans = db.startTransaction();
+		try (ResultIterator<Row> outer = db.transaction(trans).orderBy("id").iterate(Row.class)) {
+			int count = 0;
+			while (outer.hasNext()) {
+				outer.next();
+				List<Row> inner = db.transaction(trans).orderBy("id").results(Row.class);
+				assertEquals(3, inner.size());
+				count++;
+			}
+			assertEquals(3, count);
+		}
+		trans.commit();
+	}
+
+	@Test
+	public void testEviction() {
+		for (int i = 0; i < 10; i++) {
+			db.sql("select count(*) from stmtcachetest where id > " + i).first(Long.class);
+		}
+		assertTrue(db.getStatementCache().getCachedStatementCount() <= 4);
+	}
+
+	@Test
+	public void testRetiredConnection() throws Exception {
+		db.sql("select count(*) from stmtcachetest where id > 1").first(Long.class);
+		db.sql("select count(*) from stmtcachetest where id > 2").first(Long.class);
+		StatementCachingDataSource cache = db.getStatementCache();
+		assertTrue(cache.getCachedStatementCount() >= 2);
+
+		// the pool closes the connection, as it would at maxLifetime
+		HikariDataSource pool = (HikariDataSource) cache.getDelegate();
+		pool.getHikariPoolMXBean().softEvictConnections();
+		for (int i = 0; i < 50 && pool.getHikariPoolMXBean().getTotalConnections() > 0; i++) {
+			Thread.sleep(20);
+		}
+
+		db.sql("select count(*) from stmtcachetest where id > 3").first(Long.class);
+		assertEquals(1, cache.getCachedStatementCount());
+	}
+
+	@Table(name = "stmtcachetest")
+	public static class Row {
+		@Id
+		@GeneratedValue
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStream {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists streamtest").execute();
+		db.createTable(Row.class);
+
+		for (int i = 0; i < 100; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.name = "name" + i;
+			db.insert(row);
+		}
+	}
+
+	@Test
+	public void testStream() {
+		try (Stream<Row> stream = db.orderBy("id").fetchSize(10).stream(Row.class)) {
+			List<String> names = stream.filter(r -> r.id >= 95).map(r -> r.name).collect(Collectors.toList());
+			assertEquals("[name95, name96, name97, name98, name99]", names.toString());
+		}
+	}
+
+	@Test
+	public void testStreamNulls() {
+		db.sql("update streamtest set name=null where id < 10").execute();
+		try (Stream<String> stream = db.sql("select name from streamtest order by id").stream(String.class)) {
+			Spliterator<String> spliterator = stream.spliterator();
+			assertFalse(spliterator.hasCharacteristics(Spliterator.NONNULL));
+			long nulls = StreamSupport.stream(spliterator, false).filter(Objects::isNull).count();
+			assertEquals(10, nulls);
+		}
+	}
+
+	@Test
+	public void testIterate() {
+		long sum = 0;
+		try (ResultIterator<Long> it = db.sql("select id from streamtest").iterate(Long.class)) {
+			while (it.hasNext()) {
+				sum += it.next();
+			}
+			assertFalse(it.hasNext());
+		}
+		assertEquals(4950, sum);
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testIterateMapsInTransaction() {
+		Transaction trans = db.startTransaction();
+		int count = 0;
+		try (ResultIterator<LinkedHashMap> it = db.transaction(trans).table("streamtest").iterate(LinkedHashMap.class)) {
+			while (it.hasNext()) {
+				it.next();
+				count++;
+			}
+		}
+		// the transaction connection must still be usable
+		Long total = db.transaction(trans).sql("select count(*) from streamtest").first(Long.class);
+		trans.commit();
+
+		assertEquals(100, count);
+		assertEquals(100L, total.longValue());
+	}
+
+	@Table(name = "streamtest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
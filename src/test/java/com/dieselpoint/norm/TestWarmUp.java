@@ -0,0 +1,121 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+public class TestWarmUp {
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		Database db = new Database();
+		db.sql("drop table if exists warmuptest").execute();
+		db.createTable(Row.class);
+	}
+
+	private Database newDatabase() {
+		return new Database() {
+			@Override
+			protected DataSource getDataSource() throws SQLException {
+				created.incrementAndGet();
+				return super.getDataSource();
+			}
+		};
+	}
+
+	@Test
+	public void testConcurrentStart() throws Exception {
+		Database db = newDatabase();
+		CountDownLatch go = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					go.await();
+					db.results(Row.class);
+				} catch (InterruptedException e) {
+					// done
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		go.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, created.get());
+		assertSame(db.start(), db.start());
+		db.close();
+	}
+
+	@Test
+	public void testWarmUp() throws Exception {
+		Database db = newDatabase();
+		db.setMinimumIdle(3);
+		db.setStatementCacheSize(10);
+		String sql = "select * from warmuptest where id=?";
+		db.addWarmUpSql(sql);
+		db.warmUp();
+		assertEquals(1, created.get());
+
+		HikariDataSource pool = db.start().unwrap(HikariDataSource.class);
+		assertEquals(3, pool.getMinimumIdle());
+		assertEquals(3, pool.getHikariPoolMXBean().getTotalConnections());
+		assertEquals(3, db.getStatementCache().getMisses());
+
+		db.sql(sql, 1).results(Row.class);
+		assertEquals(1, db.getStatementCache().getHits());
+		assertEquals(3, db.getStatementCache().getMisses());
+		db.close();
+	}
+
+	@Test
+	public void testBadSql() {
+		Database db = newDatabase();
+		db.setMinimumIdle(1);
+		db.addWarmUpSql("select * from nosuchtable");
+		try {
+			db.warmUp();
+			fail();
+		} catch (DbException e) {
+			assertEquals("select * from nosuchtable", e.getSql());
+		}
+		try (Connection con = db.getConnection()) {
+			assertTrue(con.isValid(1));
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+		db.close();
+	}
+
+	@Table(name = "warmuptest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWriteBehind {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		Setup.setSysProperties();
+
+		db = new Database();
+		db.sql("drop table if exists writebehindtest").execute();
+		db.createTable(Event.class);
+	}
+
+	private long count() {
+		return db.sql("select count(*) from writebehindtest").first(Long.class);
+	}
+
+	@Test
+	public void testManyThreads() throws InterruptedException {
+		WriteBehindWriter writer = db.writeBehind(100, 50, 20);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 10; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					Event event = new Event();
+					event.name = "event" + i;
+					writer.insert(event);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		writer.close();
+
+		assertEquals(5000L, count());
+		assertEquals(5000L, writer.getRowsWritten());
+		assertEquals(0L, writer.getRowsFailed());
+		assertEquals(0, writer.getQueueDepth());
+		assertTrue(writer.getFlushCount() < 5000);
+	}
+
+	@Test
+	public void testFlush() {
+		// neither threshold will be reached, so only flush() writes the rows
+		WriteBehindWriter writer = db.writeBehind(1000, 1000, 60_000).multiRowInsert(true);
+		for (int i = 0; i < 10; i++) {
+			Event event = new Event();
+			event.name = "event" + i;
+			writer.insert(event);
+		}
+		writer.flush();
+		assertEquals(10L, count());
+		assertEquals(1L, writer.getFlushCount());
+		writer.close();
+	}
+
+	@Test(expected = DbException.class)
+	public void testClosed() {
+		WriteBehindWriter writer = db.writeBehind(10, 10, 10);
+		writer.close();
+		writer.insert(new Event());
+	}
+
+	@Test
+	public void testInsertDuringClose() throws InterruptedException {
+		WriteBehindWriter writer = db.writeBehind(100, 50, 20);
+		AtomicLong accepted = new AtomicLong();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					while (true) {
+						Event event = new Event();
+						event.name = "event";
+						writer.insert(event);
+						accepted.incrementAndGet();
+					}
+				} catch (DbException e) {
+					// closed
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		Thread.sleep(50);
+		writer.close();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// every row that insert() accepted was written, none was left on the queue
+		assertEquals(accepted.get(), count());
+		assertEquals(accepted.get(), writer.getRowsWritten());
+		assertEquals(0, writer.getQueueDepth());
+	}
+
+	@Table(name = "writebehindtest")
+	public static class Event {
+		@Id
+		@GeneratedValue
+		public long id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.dieselpoint.norm.bulk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PostgresCopyBulkLoaderTest {
+
+	@Test
+	public void appendRow() {
+		StringBuilder buf = new StringBuilder();
+		PostgresCopyBulkLoader.appendRow(buf, new Object[] { 1, null, "", "say \"hi\", bye", true });
+		assertEquals("\"1\",,\"\",\"say \"\"hi\"\", bye\",\"true\"\n", buf.toString());
+	}
+
+	@Test
+	public void toText() {
+		assertEquals("\\x00ff10", PostgresCopyBulkLoader.toText(new byte[] { 0, -1, 16 }));
+		assertEquals("{\"a\",NULL,\"b\\\"c\"}", PostgresCopyBulkLoader.toText(Arrays.asList("a", null, "b\"c")));
+		assertEquals("{\"1\",\"2\"}", PostgresCopyBulkLoader.toText(new Integer[] { 1, 2 }));
+
+		Timestamp ts = Timestamp.valueOf("2020-01-02 03:04:05.6");
+		assertEquals("2020-01-02 03:04:05.6", PostgresCopyBulkLoader.toText(new java.util.Date(ts.getTime())));
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.dieselpoint.norm.processor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+public class PojoInfoProcessorTest {
+
+	private static final String SOURCE = "package gen;\n" //
+			+ "import jakarta.persistence.*;\n" //
+			+ "@Table(name=\"widget\")\n" //
+			+ "public class Widget {\n" //
+			+ "  public enum Color { RED, BLUE }\n" //
+			+ "  @Id @GeneratedValue public long id;\n" //
+			+ "  @Column(name=\"label\", length=40, nullable=false) public String name;\n" //
+			+ "  @Enumerated(EnumType.ORDINAL) public Color color;\n" //
+			+ "  public Long weight;\n" //
+			+ "  @Transient public String ignored;\n" //
+			+ "  private int size;\n" //
+			+ "  public int getSize() { return size; }\n" //
+			+ "  public void setSize(int size) { this.size = size; }\n" //
+			+ "  public boolean isBig() { return size > 10; }\n" //
+			+ "}\n";
+
+	@Test
+	public void generated() throws Exception {
+		Path dir = Files.createTempDirectory("norm-processor");
+		Path src = dir.resolve("gen/Widget.java");
+		Files.createDirectories(src.getParent());
+		Files.write(src, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int rc = compiler.run(null, null, null, "-proc:only", "-processor", PojoInfoProcessor.class.getName(),
+				"-classpath", System.getProperty("java.class.path"), "-d", dir.toString(), "-s", dir.toString(),
+				src.toString());
+		assertEquals(0, rc);
+		Path gen = dir.resolve("gen/Widget" + PojoInfoProcessor.SUFFIX + ".java");
+		assertTrue(Files.exists(gen));
+
+		rc = compiler.run(null, null, null, "-proc:none", "-classpath", System.getProperty("java.class.path"), "-d",
+				dir.toString(), src.toString(), gen.toString());
+		assertEquals(0, rc);
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() },
+				getClass().getClassLoader())) {
+			Class<?> widget = loader.loadClass("gen.Widget");
+
+			StandardPojoInfo pi = new StandardSqlMaker().getPojoInfo(widget);
+			assertEquals("gen.Widget" + PojoInfoProcessor.SUFFIX, pi.getClass().getName());
+
+			StandardPojoInfo reflective = new StandardSqlMaker() {
+				@Override
+				protected StandardPojoInfo loadGeneratedPojoInfo(Class<?> rowClass) {
+					return null;
+				}
+			}.getPojoInfo(widget);
+			assertEquals(StandardPojoInfo.class, reflective.getClass());
+
+			assertEquals(reflective.table, pi.table);
+			assertEquals(reflective.propertyMap.keySet().toString(), pi.propertyMap.keySet().toString());
+			assertEquals(reflective.primaryKeyNames, pi.primaryKeyNames);
+			assertArrayEquals(reflective.generatedColumnNames, pi.generatedColumnNames);
+			assertEquals(reflective.insertSql, pi.insertSql);
+			assertEquals(reflective.updateSql, pi.updateSql);
+			assertEquals(reflective.selectColumns, pi.selectColumns);
+			assertEquals(40, pi.getProperty("label").columnAnnotation.length());
+			assertEquals(false, pi.getProperty("label").columnAnnotation.nullable());
+			assertNull(pi.getProperty("big").setter);
+
+			Object row = widget.getConstructor().newInstance();
+			pi.putValue(row, "id", 7L);
+			pi.putValue(row, "label", "sprocket");
+			pi.putValue(row, "color", 1);
+			pi.putValue(row, "size", 12);
+			assertEquals(7L, pi.getValue(row, "id"));
+			assertEquals("sprocket", pi.getValue(row, "label"));
+			assertEquals(1, pi.getValue(row, "color"));
+			assertEquals(12, pi.getValue(row, "size"));
+			assertEquals(true, pi.getValue(row, "big"));
+			assertEquals(Arrays.asList(pi.insertColumnNames), Arrays.asList(reflective.insertColumnNames));
+
+			// narrower numbers are converted to the property type
+			pi.putValue(row, "id", 8);
+			pi.putValue(row, "size", (short) 13);
+			pi.putValue(row, "weight", 5);
+			assertEquals(8L, pi.getValue(row, "id"));
+			assertEquals(13, pi.getValue(row, "size"));
+			assertEquals(5L, pi.getValue(row, "weight"));
+			pi.putValue(row, "weight", null);
+			assertNull(pi.getValue(row, "weight"));
+
+			// but not narrowed
+			for (Object lossy : new Object[] { 1L << 32, 1.9, new BigDecimal("1.9") }) {
+				try {
+					pi.putValue(row, "size", lossy);
+					fail();
+				} catch (DbException e) {
+					// expected
+				}
+			}
+			assertEquals(13, pi.getValue(row, "size"));
+		} finally {
+			deleteAll(dir.toFile());
+		}
+	}
+
+	private static void deleteAll(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteAll(f);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class InListTest {
+
+	@Test
+	public void standard() {
+		StandardSqlMaker maker = new StandardSqlMaker();
+
+		List<Object> args = new ArrayList<>(Arrays.asList("bob", Arrays.asList(1, 2, 3), 5));
+		String where = maker.expandInLists("name=? and id in (?) and x>?", args);
+		assertEquals("name=? and id in (?,?,?,?) and x>?", where);
+		assertEquals(Arrays.asList("bob", 1, 2, 3, 3, 5), args);
+
+		// list lengths in the same bucket share the same sql
+		args = new ArrayList<>(Arrays.asList(Arrays.asList(1, 2, 3, 4)));
+		assertEquals("id in (?,?,?,?)", maker.expandInLists("id in (?)", args));
+
+		args = new ArrayList<>(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5)));
+		assertEquals("id not in (?,?,?,?,?,?,?,?)", maker.expandInLists("id NOT IN ( ? )", args));
+		assertEquals(8, args.size());
+
+		args = new ArrayList<>(Arrays.asList(Collections.emptyList()));
+		assertEquals("1=0", maker.expandInLists("id in (?)", args));
+		assertEquals(0, args.size());
+	}
+
+	@Test
+	public void empty() {
+		StandardSqlMaker maker = new StandardSqlMaker();
+
+		List<Object> args = new ArrayList<>(Arrays.asList("bob", Collections.emptyList(), 5));
+		assertEquals("name=? and 1=1 and x>?", maker.expandInLists("name=? and t.id not in (?) and x>?", args));
+		assertEquals(Arrays.asList("bob", 5), args);
+
+		args = new ArrayList<>(Arrays.asList(Collections.emptySet(), Arrays.asList(1)));
+		assertEquals("a=1 or 1=0 or (b) in (?)",
+				maker.expandInLists("a=1 or lower(\"Name\") in (?) or (b) in (?)", args));
+		assertEquals(Arrays.asList(1), args);
+
+		args = new ArrayList<>(Arrays.asList(Collections.emptyList()));
+		assertEquals("not(1=0)", maker.expandInLists("not(id in (?))", args));
+	}
+
+	@Test
+	public void leftAlone() {
+		StandardSqlMaker maker = new StandardSqlMaker();
+
+		// not an "in (?)", so it could be an array column
+		List<Object> args = new ArrayList<>(Arrays.asList(Arrays.asList("a", "b")));
+		assertEquals("tags = ?", maker.expandInLists("tags = ?", args));
+		assertEquals(1, args.size());
+
+		// ? inside a quoted string isn't a placeholder, and "join (" isn't "in ("
+		args = new ArrayList<>(Arrays.asList(Arrays.asList(1, 2)));
+		assertEquals("x = 'in (?)' and id in (?,?)", maker.expandInLists("x = 'in (?)' and id in (?)", args));
+		args = new ArrayList<>(Arrays.asList(Arrays.asList(1, 2)));
+		assertEquals("myjoin (?)", maker.expandInLists("myjoin (?)", args));
+	}
+
+	@Test
+	public void postgres() {
+		PostgresMaker maker = new PostgresMaker();
+
+		List<Object> args = new ArrayList<>(Arrays.asList(Arrays.asList(1L, 2L, 3L), "bob"));
+		String where = maker.expandInLists("id in (?) and name=?", args);
+		assertEquals("id = any(?) and name=?", where);
+		assertArrayEquals(new Long[] { 1L, 2L, 3L }, (Long[]) args.get(0));
+		assertEquals("bob", args.get(1));
+
+		args = new ArrayList<>(Arrays.asList(Arrays.asList("a")));
+		assertEquals("code <> all(?)", maker.expandInLists("code not in (?)", args));
+		assertArrayEquals(new String[] { "a" }, (String[]) args.get(0));
+
+		// mixed types can't be bound as an array
+		args = new ArrayList<>(Arrays.asList(Arrays.asList(1, 2L)));
+		assertEquals("id in (?,?)", maker.expandInLists("id in (?)", args));
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+
+/**
+ * Measures the per-row cost of StandardSqlMaker.getInsertArgs() with the
+ * generated property accessors, against the original implementation that
+ * looked up each column by name and read it with reflection. Not a unit test;
+ * run main() from the IDE.
+ */
+public class InsertArgsBenchmark {
+
+	private static final int ROWS = 1_000_000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+
+		StandardSqlMaker generated = new StandardSqlMaker();
+
+		StandardPojoInfo reflectionInfo = new StandardPojoInfo(Wide.class);
+		generated.makeInsertSql(reflectionInfo);
+		for (Property prop : reflectionInfo.propertyMap.values()) {
+			prop.getter = null;
+			prop.setter = null;
+		}
+		Query query = new Query(new Database());
+		Wide row = new Wide();
+
+		for (int round = 0; round < ROUNDS; round++) {
+			System.out.printf("round %d: before %.1f ns/row, after %.1f ns/row%n", round,
+					timeBefore(reflectionInfo, row), timeAfter(generated, query, row));
+		}
+	}
+
+	/**
+	 * The original getInsertArgs(): look up each column by name and read it with
+	 * reflection.
+	 */
+	private static double timeBefore(StandardPojoInfo pojoInfo, Wide row) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ROWS; i++) {
+			row.id = i;
+			Object[] args = new Object[pojoInfo.insertSqlArgCount];
+			for (int j = 0; j < pojoInfo.insertSqlArgCount; j++) {
+				args[j] = pojoInfo.getValue(row, pojoInfo.insertColumnNames[j]);
+			}
+			sink += args.length;
+		}
+		return elapsed(start, sink);
+	}
+
+	private static double timeAfter(StandardSqlMaker maker, Query query, Wide row) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ROWS; i++) {
+			row.id = i;
+			Object[] args = maker.getInsertArgs(query, row);
+			sink += args.length;
+		}
+		return elapsed(start, sink);
+	}
+
+	private static double elapsed(long start, long sink) {
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println(); // keep the loop from being optimized away
+		}
+		return (double) elapsed / ROWS;
+	}
+
+	@Table(name = "wide")
+	public static class Wide {
+		@Id
+		public long id;
+		public String a = "a";
+		public String b = "b";
+		public int c = 3;
+		public long d = 4;
+		public double e = 5.0;
+		private String f = "f";
+		private int g = 7;
+		private long h = 8;
+		private String i = "i";
+		private String j = "j";
+
+		public String getF() { return f; }
+		public void setF(String f) { this.f = f; }
+		public int getG() { return g; }
+		public void setG(int g) { this.g = g; }
+		public long getH() { return h; }
+		public void setH(long h) { this.h = h; }
+		public String getI() { return i; }
+		public void setI(String i) { this.i = i; }
+		public String getJ() { return j; }
+		public void setJ(String j) { this.j = j; }
+	}
+
+}
@@ -61,4 +61,23 @@ public class MySqlMakerTest {
 
         assertEquals(pojoInfo.upsertSql, "insert into testTable (name) values (?) on duplicate key update name=?");
     }
+
+    @Test
+    public void getMultiRowUpsertSql() {
+        Query query = new Query(db);
+
+        String upsertSql = sut.getMultiRowUpsertSql(query, StandardSqlMakerTest.TestTable.class, 2);
+
+        assertEquals(upsertSql, "insert into testTable (name) values (?),(?) on duplicate key update name=values(name)");
+
+        sut.setUseRowAlias(true);
+        upsertSql = sut.getMultiRowUpsertSql(query, StandardSqlMakerTest.TestTable.class, 2);
+
+        assertEquals(upsertSql, "insert into testTable (name) values (?),(?) as new on duplicate key update name=new.name");
+
+        // the update clause is cached per class, the values are not
+        upsertSql = sut.getMultiRowUpsertSql(query, StandardSqlMakerTest.TestTable.class, 3);
+
+        assertEquals(upsertSql, "insert into testTable (name) values (?),(?),(?) as new on duplicate key update name=new.name");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+
+public class PostgresMakerTest {
+    PostgresMaker sut;
+    Database db;
+
+    @Before
+    public void setup() {
+        sut = new PostgresMaker();
+        db = mock(Database.class);
+
+        when(db.getSqlMaker()).thenReturn(sut);
+    }
+
+    @Test
+    public void getUpsertSql() {
+        Query query = new Query(db);
+
+        NaturalKeyTable row = new NaturalKeyTable();
+        row.code = "abc";
+        row.name = "test";
+
+        String upsertSql = sut.getUpsertSql(query, row);
+
+        assertEquals(upsertSql, "insert into naturalKeyTable (code,name) values (?,?) on conflict (code) do update set name=excluded.name");
+    }
+
+    @Test
+    public void getUpsertArgs() {
+        Query query = new Query(db);
+
+        NaturalKeyTable row = new NaturalKeyTable();
+        row.code = "abc";
+        row.name = "test";
+
+        Object[] upsertArgs = sut.getUpsertArgs(query, row);
+
+        assertArrayEquals(upsertArgs, new Object[] { "abc", "test" });
+    }
+
+    @Test
+    public void getMultiRowUpsertSql() {
+        Query query = new Query(db);
+
+        String upsertSql = sut.getMultiRowUpsertSql(query, NaturalKeyTable.class, 2);
+
+        assertEquals(upsertSql, "insert into naturalKeyTable (code,name) values (?,?),(?,?) on conflict (code) do update set name=excluded.name");
+    }
+
+    @Table(name = "naturalKeyTable")
+    public static class NaturalKeyTable {
+        @Id
+        public String code;
+        public String name;
+    }
+}
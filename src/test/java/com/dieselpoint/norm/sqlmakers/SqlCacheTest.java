@@ -0,0 +1,73 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+
+public class SqlCacheTest {
+
+	@Test
+	public void get() {
+		SqlCache cache = new SqlCache(100);
+		AtomicInteger builds = new AtomicInteger();
+
+		String first = cache.get(SqlCache.Kind.SELECT, Row.class, null, "id=?", null,
+				() -> "select " + builds.incrementAndGet());
+		String second = cache.get(SqlCache.Kind.SELECT, Row.class, null, "id=?", null,
+				() -> "select " + builds.incrementAndGet());
+		assertSame(first, second);
+		assertEquals(1, builds.get());
+
+		cache.get(SqlCache.Kind.SELECT, Row.class, null, "id=?", "id", () -> "select " + builds.incrementAndGet());
+		cache.get(SqlCache.Kind.COUNT, Row.class, null, "id=?", null, () -> "select " + builds.incrementAndGet());
+		assertEquals(3, builds.get());
+	}
+
+	@Test
+	public void bounded() {
+		SqlCache cache = new SqlCache(100);
+		for (int i = 0; i < 1000; i++) {
+			String where = "id=" + i;
+			cache.get(SqlCache.Kind.SELECT, Row.class, null, where, null, () -> where);
+		}
+		assertTrue(cache.size() <= 100);
+	}
+
+	@Test
+	public void sqlMaker() {
+		StandardSqlMaker maker = new StandardSqlMaker();
+		Query query = new Query(new Database()).where("id=?", 1).orderBy("name");
+
+		String sql = maker.getSelectSql(query, Row.class);
+		assertEquals("select id,name from sqlcachetest where id=? order by name", sql);
+		assertSame(sql, maker.getSelectSql(new Query(new Database()).where("id=?", 2).orderBy("name"), Row.class));
+
+		Row row = new Row();
+		String insert = maker.getInsertSql(query, row);
+		assertEquals("insert into sqlcachetest (id,name) values (?,?)", insert);
+		assertSame(insert, maker.getInsertSql(query, row));
+
+		assertEquals("insert into other (id,name) values (?,?)",
+				maker.getInsertSql(new Query(new Database()).table("other"), row));
+		assertEquals("select count(*) from other where id=?",
+				maker.getSelectCountSql(new Query(new Database()).table("other").where("id=?", 1), null));
+	}
+
+	@Table(name = "sqlcachetest")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+	}
+
+}